@@ -0,0 +1,65 @@
+package snake;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Collision lookups against boards filled to a given density.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardLookupBenchmark {
+
+	private static final int PROBES = 4096;
+
+	@Param({"80", "1000"})
+	private int size;
+
+	@Param({"0.1", "0.5", "0.9"})
+	private double density;
+
+	private Board board;
+	private int[] probes;
+
+	@Setup
+	public void setup() {
+		Rng random = new Rng(42);
+		board = new Board(size, size);
+		for (int y = 1; y < size - 1; y++) {
+			for (int x = 1; x < size - 1; x++) {
+				if (random.nextInt(1000) < density * 1000) board.set(board.cell(x, y), 1);
+			}
+		}
+
+		probes = new int[PROBES];
+		for (int i = 0; i < PROBES; i++) {
+			probes[i] = board.cell(1 + random.nextInt(size - 2), 1 + random.nextInt(size - 2));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(PROBES)
+	public int lookup() {
+		int collisions = 0;
+		for (int i = 0; i < PROBES; i++) {
+			if (!board.isEmpty(probes[i])) collisions++;
+		}
+		return collisions;
+	}
+}
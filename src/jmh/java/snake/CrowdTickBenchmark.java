@@ -0,0 +1,76 @@
+package snake;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One tick of a crowded board with hundreds of bots, which takes the parallel two phase
+ * path. Compare runs with different common pool parallelism to see how it scales.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CrowdTickBenchmark {
+
+	@Param({"64", "256", "1024"})
+	private int players;
+
+	@Param({"256"})
+	private int rows;
+
+	@Param({"256"})
+	private int cols;
+
+	@Param({"false", "true"})
+	private boolean tron;
+
+	private Game game;
+	private ControllerRunner controllers;
+	private long seed;
+
+	@Setup
+	public void setup() {
+		newGame();
+	}
+
+	private void newGame() {
+		seed++;
+		game = new Game(rows, cols, null, tron, new VirtualClock(), seed);
+		game.setResetPause(0);
+		controllers = new ControllerRunner(game, null);
+		for (int i = 0; i < players; i++) {
+			Player player = game.addPlayer("Bot " + (i + 1));
+			controllers.addController(new RandomWalkController(player, game, seed * 31 + i));
+		}
+	}
+
+	/**
+	 * Outside the measured call, building a game costs far more than a tick.
+	 */
+	@Setup(Level.Invocation)
+	public void replaceFinishedGame() {
+		if (game.isGameOver()) newGame();
+	}
+
+	@Benchmark
+	public long tick() {
+		controllers.pollOnce();
+		game.tick();
+		return game.getTick();
+	}
+}
@@ -0,0 +1,57 @@
+package snake;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Picking the cell for new food on boards that are already mostly covered by snakes. The
+ * food itself is not placed so the density stays fixed across iterations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FoodSpawnBenchmark {
+
+	@Param({"20", "200"})
+	private int rows;
+
+	@Param({"80", "800"})
+	private int cols;
+
+	@Param({"0.5", "0.9", "0.99"})
+	private double density;
+
+	private Game game;
+	private Rng random;
+
+	@Setup
+	public void setup() {
+		game = new Game(rows, cols, null, false, new VirtualClock(), 42);
+		Board board = game.getBoard();
+		random = new Rng(7);
+		for (int y = 1; y < rows - 1; y++) {
+			for (int x = 1; x < cols - 1; x++) {
+				if (random.nextInt(1000) < density * 1000) board.set(board.cell(x, y), 1);
+			}
+		}
+	}
+
+	@Benchmark
+	public int spawn() {
+		return game.getBoard().randomFreeCell(random);
+	}
+}
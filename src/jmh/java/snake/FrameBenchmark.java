@@ -0,0 +1,106 @@
+package snake;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.googlecode.lanterna.TerminalSize;
+import com.googlecode.lanterna.terminal.virtual.DefaultVirtualTerminal;
+
+/**
+ * Composes a frame from the latest snapshot and flushes the difference through a
+ * renderer, either into an in-memory Lanterna terminal or as ANSI codes to a channel
+ * that discards them. A finished game is reset so that changed frames keep changing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameBenchmark {
+
+	@Param({"20", "200"})
+	private int rows;
+
+	@Param({"80", "800"})
+	private int cols;
+
+	@Param({"lanterna", "ansi"})
+	private String renderer;
+
+	private Game game;
+	private ControllerRunner controllers;
+	private TerminalGameDisplayer displayer;
+	private FrameGrid grid;
+	private Renderer output;
+
+	@Setup
+	public void setup() throws IOException {
+		game = new Game(rows, cols, null, false, new VirtualClock(), 42);
+		game.enableSnapshots();
+		game.setResetPause(0);
+		controllers = new ControllerRunner(game, null);
+		for (int i = 0; i < 4; i++) {
+			Player player = game.addPlayer("Bot " + (i + 1));
+			controllers.addController(new RandomWalkController(player, game, i));
+		}
+		for (int i = 0; i < 1000; i++) {
+			controllers.pollOnce();
+			game.tick();
+		}
+
+		displayer = new TerminalGameDisplayer(game, Thread.currentThread());
+		grid = new FrameGrid(cols, rows);
+		if (renderer.equals("ansi")) {
+			output = new AnsiRenderer(Channels.newChannel(new OutputStream() {
+				@Override
+				public void write(int b) {
+				}
+
+				@Override
+				public void write(byte[] b, int off, int len) {
+				}
+			}));
+		} else {
+			output = new LanternaRenderer(new DefaultVirtualTerminal(new TerminalSize(cols, rows)));
+		}
+		output.open(cols, rows);
+	}
+
+	private int flush() throws IOException {
+		int written = grid.flush(output);
+		output.flush();
+		return written;
+	}
+
+	@Benchmark
+	public int unchangedFrame() throws IOException {
+		displayer.drawFrame(grid, game.getSnapshot());
+		return flush();
+	}
+
+	@Benchmark
+	public int changedFrame() throws IOException {
+		for (int i = 0; i < 7; i++) {
+			if (game.isGameOver()) game.reset(true);
+			controllers.pollOnce();
+			game.tick();
+		}
+		displayer.drawFrame(grid, game.getSnapshot());
+		return flush();
+	}
+}
@@ -0,0 +1,44 @@
+package snake;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnakeMoveBenchmark {
+
+	@Param({"1", "100", "10000", "100000"})
+	private int length;
+
+	private Snake snake;
+	private int nextHead;
+
+	@Setup
+	public void setup() {
+		snake = new Snake(0);
+		for (nextHead = 1; nextHead < length; nextHead++) {
+			snake.growOnNextMove();
+			snake.move(nextHead);
+		}
+	}
+
+	@Benchmark
+	public int move() {
+		return snake.move(nextHead++);
+	}
+}
@@ -0,0 +1,77 @@
+package snake;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One full game tick, including the synchronous controller poll, with bots on every seat.
+ * A finished game is replaced by a fresh one with the next seed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TickBenchmark {
+
+	@Param({"1", "2", "4"})
+	private int players;
+
+	@Param({"20"})
+	private int rows;
+
+	@Param({"80"})
+	private int cols;
+
+	@Param({"false", "true"})
+	private boolean tron;
+
+	private Game game;
+	private ControllerRunner controllers;
+	private long seed;
+
+	@Setup
+	public void setup() {
+		newGame();
+	}
+
+	private void newGame() {
+		seed++;
+		game = new Game(rows, cols, null, tron, new VirtualClock(), seed);
+		// paused ticks would be measured as near free ticks
+		game.setResetPause(0);
+		controllers = new ControllerRunner(game, null);
+		for (int i = 0; i < players; i++) {
+			Player player = game.addPlayer("Bot " + (i + 1));
+			controllers.addController(new RandomWalkController(player, game, seed * 31 + i));
+		}
+	}
+
+	/**
+	 * Outside the measured call, building a game costs far more than a tick.
+	 */
+	@Setup(Level.Invocation)
+	public void replaceFinishedGame() {
+		if (game.isGameOver()) newGame();
+	}
+
+	@Benchmark
+	public long tick() {
+		controllers.pollOnce();
+		game.tick();
+		return game.getTick();
+	}
+}
@@ -0,0 +1,129 @@
+package snake;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+import com.googlecode.lanterna.TextColor;
+
+/**
+ * Writes ANSI escape codes for any terminal that understands them, such as a terminal
+ * over SSH. A frame is built into one reused byte array and written to the channel with
+ * a single call.
+ */
+public class AnsiRenderer implements Renderer {
+
+	private static final byte ESC = 0x1B;
+
+	private final WritableByteChannel out;
+	private byte[] buffer = new byte[16 * 1024];
+	private ByteBuffer view = ByteBuffer.wrap(buffer);
+	private int length;
+
+	public AnsiRenderer(WritableByteChannel out) {
+		this.out = out;
+	}
+
+	@Override
+	public void open(int cols, int rows) throws IOException {
+		// alternate screen, hidden cursor, bold on black, cleared
+		append("\033[?1049h\033[?25l\033[0;1;40m\033[2J");
+		flush();
+	}
+
+	@Override
+	public void setColor(TextColor.ANSI color) {
+		ensure(5);
+		buffer[length++] = ESC;
+		buffer[length++] = '[';
+		buffer[length++] = '3';
+		buffer[length++] = (byte) ('0' + foreground(color));
+		buffer[length++] = 'm';
+	}
+
+	/**
+	 * Last digit of the SGR foreground code, 38 would start an extended color.
+	 */
+	private static int foreground(TextColor.ANSI color) {
+		switch (color) {
+			case BLACK: return 0;
+			case RED: return 1;
+			case GREEN: return 2;
+			case YELLOW: return 3;
+			case BLUE: return 4;
+			case MAGENTA: return 5;
+			case CYAN: return 6;
+			case WHITE: return 7;
+			default: return 9;
+		}
+	}
+
+	@Override
+	public void moveTo(int x, int y) {
+		ensure(24);
+		buffer[length++] = ESC;
+		buffer[length++] = '[';
+		appendInt(y + 1);
+		buffer[length++] = ';';
+		appendInt(x + 1);
+		buffer[length++] = 'H';
+	}
+
+	@Override
+	public void put(char c) {
+		ensure(3);
+		if (c < 0x80) {
+			buffer[length++] = (byte) c;
+		} else if (c < 0x800) {
+			buffer[length++] = (byte) (0xC0 | c >> 6);
+			buffer[length++] = (byte) (0x80 | c & 0x3F);
+		} else {
+			buffer[length++] = (byte) (0xE0 | c >> 12);
+			buffer[length++] = (byte) (0x80 | c >> 6 & 0x3F);
+			buffer[length++] = (byte) (0x80 | c & 0x3F);
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		if (length == 0) return;
+		view.clear().limit(length);
+		while (view.hasRemaining()) {
+			out.write(view);
+		}
+		length = 0;
+	}
+
+	@Override
+	public void close() throws IOException {
+		append("\033[0m\033[?25h\033[?1049l");
+		flush();
+	}
+
+	private void append(String codes) {
+		ensure(codes.length());
+		for (int i = 0; i < codes.length(); i++) {
+			buffer[length++] = (byte) codes.charAt(i);
+		}
+	}
+
+	private void appendInt(int value) {
+		int start = length;
+		do {
+			buffer[length++] = (byte) ('0' + value % 10);
+			value /= 10;
+		} while (value > 0);
+		for (int i = start, j = length - 1; i < j; i++, j--) {
+			byte b = buffer[i];
+			buffer[i] = buffer[j];
+			buffer[j] = b;
+		}
+	}
+
+	private void ensure(int bytes) {
+		if (length + bytes <= buffer.length) return;
+		buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + bytes));
+		view = ByteBuffer.wrap(buffer);
+	}
+}
@@ -0,0 +1,161 @@
+package snake;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * One game hosted by an {@link ArenaHost}. The arena does not own a thread, the host's
+ * workers call {@link #run()} once per tick. While nobody is playing, because the game is
+ * over or has no players yet, the arena drops to a slow idle rate where it only watches
+ * its controllers for a reset.
+ */
+public class Arena implements Runnable {
+
+	public static final long IDLE_MILLIS = 250;
+
+	private final int id;
+	private final Game game;
+	private final ControllerRunner controllers;
+	private final ScheduledExecutorService scheduler;
+	private final ArenaHost host;
+	// both guarded by this
+	private ScheduledFuture<?> future;
+	private boolean idle;
+	private volatile boolean closed;
+	// held for a whole tick so that checkpoints fall between ticks
+	private final Object ticking = new Object();
+
+	Arena(int id, Game game, ScheduledExecutorService scheduler, ArenaHost host) {
+		this.id = id;
+		this.game = game;
+		this.controllers = new ControllerRunner(game, null);
+		this.scheduler = scheduler;
+		this.host = host;
+		this.idle = true;
+		this.schedule(IDLE_MILLIS);
+	}
+
+	private synchronized void schedule(long periodMillis) {
+		if (closed) return;
+		if (future != null) future.cancel(false);
+		future = scheduler.scheduleAtFixedRate(this, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * An exception would silently cancel the scheduled runs, so it is reported and the
+	 * arena removed from its host instead.
+	 */
+	@Override
+	public void run() {
+		try {
+			synchronized (ticking) {
+				tick();
+			}
+		} catch (RuntimeException e) {
+			System.err.println("Arena " + id + " stopped");
+			e.printStackTrace();
+			host.remove(this);
+		}
+	}
+
+	private void tick() {
+		if (closed) return;
+
+		controllers.pollOnce();
+		if (game.hasQuit()) {
+			host.remove(this);
+			return;
+		}
+
+		game.tick();
+
+		boolean nowIdle = game.playerCount() == 0 || game.isGameOver();
+		synchronized (this) {
+			if (nowIdle != idle) {
+				idle = nowIdle;
+				schedule(idle ? IDLE_MILLIS : Game.TICK_MILLIS);
+			}
+		}
+	}
+
+	/**
+	 * Seats a new player driven by the controller made for it, or returns null if the
+	 * game is full or the name is taken.
+	 */
+	public Player addPlayer(String name, Function<Player, Controller> controller) {
+		Player player;
+		// seated between two ticks, so the recorded join tick is the one it first plays
+		synchronized (ticking) {
+			player = game.addPlayer(name);
+		}
+		if (player == null) return null;
+		controllers.addController(controller.apply(player));
+		wake();
+		return player;
+	}
+
+	/**
+	 * Gives a player of a restored game a controller again, returns null if the game has
+	 * no player of that name.
+	 */
+	public Player attach(String name, Function<Player, Controller> controller) {
+		for (Player player : game.getPlayers()) {
+			if (player.getName().equals(name)) {
+				controllers.addController(controller.apply(player));
+				wake();
+				return player;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Saves the game between two ticks, it keeps running.
+	 */
+	public void checkpoint(Path file) throws IOException {
+		synchronized (ticking) {
+			GameCheckpoint.save(game, file);
+		}
+	}
+
+	public void reset() {
+		game.reset(true);
+		wake();
+	}
+
+	public void quit() {
+		host.remove(this);
+	}
+
+	private synchronized void wake() {
+		if (!idle) return;
+		idle = false;
+		schedule(Game.TICK_MILLIS);
+	}
+
+	synchronized void close() {
+		closed = true;
+		if (future != null) future.cancel(false);
+		game.quit(true);
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public Game getGame() {
+		return game;
+	}
+
+	public synchronized boolean isIdle() {
+		return idle;
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+}
@@ -0,0 +1,110 @@
+package snake;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hosts many independent games in one process on a small, shared pool of worker threads
+ * instead of a game, display and controller thread per game.
+ */
+public class ArenaHost implements Closeable {
+
+	private final ScheduledThreadPoolExecutor scheduler;
+	private final Map<Integer, Arena> arenas = new ConcurrentHashMap<Integer, Arena>();
+	private final AtomicInteger nextId = new AtomicInteger(1);
+	private volatile ScoreStore scores;
+
+	public ArenaHost(int workers) {
+		this.scheduler = new ScheduledThreadPoolExecutor(workers, runnable -> {
+			Thread thread = new Thread(runnable, "arena-worker");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.scheduler.setRemoveOnCancelPolicy(true);
+	}
+
+	public Arena createArena(int rows, int cols, boolean tron, long seed) {
+		return host(new Game(rows, cols, null, tron, SystemClock.INSTANCE, seed));
+	}
+
+	/**
+	 * Hosts a game saved by {@link Arena#checkpoint(Path)}, its players get their
+	 * controllers back through {@link Arena#attach}.
+	 */
+	public Arena restoreArena(Path file) throws IOException {
+		return host(GameCheckpoint.load(file, null, SystemClock.INSTANCE));
+	}
+
+	private Arena host(Game game) {
+		int id = nextId.getAndIncrement();
+		game.setScoreStore(scores);
+		Arena arena = new Arena(id, game, scheduler, this);
+		arenas.put(id, arena);
+		return arena;
+	}
+
+	/**
+	 * Records the matches of every arena created from now on into one shared store.
+	 */
+	public void setScoreStore(ScoreStore scores) {
+		this.scores = scores;
+	}
+
+	public Arena getArena(int id) {
+		return arenas.get(id);
+	}
+
+	public int getArenaCount() {
+		return arenas.size();
+	}
+
+	void remove(Arena arena) {
+		if (arenas.remove(arena.getId()) != null) {
+			arena.close();
+		}
+	}
+
+	@Override
+	public void close() {
+		for (Arena arena : arenas.values()) {
+			remove(arena);
+		}
+		scheduler.shutdown();
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+		int workers = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+		ArenaHost host = new ArenaHost(workers);
+		for (int i = 0; i < count; i++) {
+			Arena arena = host.createArena(20, 80, i % 2 == 1, i);
+			for (int p = 0; p < 4; p++) {
+				long seed = i * 31L + p;
+				arena.addPlayer("Bot " + (p + 1), player -> new RandomWalkController(player, arena.getGame(), seed));
+			}
+		}
+
+		System.out.println("Hosting " + count + " arenas on " + workers + " workers for " + seconds + "s.");
+		for (int s = 0; s < seconds; s++) {
+			TimeUnit.SECONDS.sleep(1);
+			long ticks = 0;
+			int idle = 0;
+			for (int id = 1; id <= count; id++) {
+				Arena arena = host.getArena(id);
+				if (arena == null) continue;
+				ticks += arena.getGame().getTick();
+				if (arena.isIdle()) idle++;
+			}
+			System.out.println("t=" + (s + 1) + "s total ticks " + ticks + ", idle arenas " + idle);
+		}
+		host.close();
+	}
+}
@@ -0,0 +1,87 @@
+package snake;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collector;
+import java.util.stream.LongStream;
+
+/**
+ * Runs many headless games across a fork-join pool, one seed per game, and reduces the
+ * results with a caller supplied collector.
+ */
+public class BatchSimulation {
+
+	private final Simulation simulation;
+	private final ForkJoinPool pool;
+
+	public BatchSimulation(Simulation simulation, int parallelism) {
+		this.simulation = simulation;
+		this.pool = new ForkJoinPool(parallelism);
+	}
+
+	public <R> R run(long firstSeed, int games, Collector<MatchResult, ?, R> collector) {
+		try {
+			return pool.submit(() -> 
+				LongStream.range(firstSeed, firstSeed + games)
+						  .parallel()
+						  .mapToObj(simulation::play)
+						  .collect(collector)).get();
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	public int getParallelism() {
+		return pool.getParallelism();
+	}
+
+	private static int intArg(String[] args, String name, int fallback) {
+		for (int i = 0; i < args.length - 1; i++) {
+			if (name.equalsIgnoreCase(args[i])) return Integer.parseInt(args[i + 1]);
+		}
+		return fallback;
+	}
+
+	private static boolean flag(String[] args, String name) {
+		for (String arg : args) {
+			if (name.equalsIgnoreCase(arg)) return true;
+		}
+		return false;
+	}
+
+	public static void main(String[] args) {
+		int games = intArg(args, "--games", 10000);
+		int players = intArg(args, "--players", 4);
+		int rows = intArg(args, "--rows", 20);
+		int cols = intArg(args, "--cols", 80);
+		int threads = intArg(args, "--threads", Runtime.getRuntime().availableProcessors());
+		long seed = intArg(args, "--seed", 1);
+		long maxTicks = intArg(args, "--max-ticks", 100000);
+		boolean tron = flag(args, "--tron");
+		String bots = "random";
+		for (int i = 0; i < args.length - 1; i++) {
+			if ("--bots".equalsIgnoreCase(args[i])) bots = args[i + 1];
+		}
+
+		BatchSimulation batch = new BatchSimulation(new Simulation(rows, cols, players, tron, maxTicks, bots), threads);
+
+		long start = System.nanoTime();
+		MatchSummary summary = batch.run(seed, games, MatchSummary.collector());
+		double seconds = (System.nanoTime() - start) / 1e9;
+		batch.shutdown();
+
+		System.out.println("Simulated " + summary.getGames() + " " + (tron ? "tron" : "snake") + " games in " + 
+						   String.format("%.2f", seconds) + "s on " + threads + " threads.");
+		System.out.println(String.format("%.1f games/s, %.1f games/s/core, %.0f ticks/s", 
+						   summary.getGames() / seconds, summary.getGames() / seconds / threads, summary.getTicks() / seconds));
+		System.out.println("Ties: " + summary.getTies());
+		for (int i = 0; i < summary.getSeats(); i++) {
+			System.out.println(String.format("Seat %d: %6d wins, avg score %8.1f, avg ticks survived %8.1f", 
+							   i + 1, summary.getWins(i), summary.getAverageScore(i), summary.getAverageTicksSurvived(i)));
+		}
+	}
+}
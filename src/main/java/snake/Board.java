@@ -0,0 +1,400 @@
+package snake;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Occupancy grid over the whole board, cell {@code y * width + x}. The outermost ring of
+ * cells holds {@link #WALL} so a head that leaves the playing field simply runs into a
+ * wall, every other cell is {@link #EMPTY} or the id of the player occupying it. Food
+ * lives in a separate bitmap over the same cells.
+ *
+ * Cells are stored in pages of {@link #PAGE_SIZE} that are only allocated once something
+ * is written to them, so a huge board that is mostly empty costs memory in proportion to
+ * the area that was actually played on. Reading a cell of a missing page answers what a
+ * fresh page would hold, a wall on the border and empty everywhere else.
+ *
+ * Boards up to {@link #INDEX_LIMIT} cells also keep an index of the free cells, empty and
+ * without food, as a swap-remove list with the slot of every cell, so a uniformly random
+ * free cell is found in constant time however full the board is.
+ */
+public class Board {
+
+	public static final int EMPTY = 0;
+	public static final int WALL = -1;
+
+	static final int PAGE_SHIFT = 10;
+	static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+	private static final int PAGE_MASK = PAGE_SIZE - 1;
+	private static final int FOOD_WORDS = PAGE_SIZE / 64;
+	static final int INDEX_LIMIT = 1 << 20;
+	private static final int SAMPLE_ATTEMPTS = 64;
+
+	private final int width;
+	private final int height;
+	private final int[][] pages;
+	private final long[][] foodPages;
+	private int allocatedPages;
+	private int foodCount;
+	private final int[] free;
+	private final int[] freeSlot;
+	private int freeCount;
+
+	public Board(int width, int height) {
+		if ((long) width * height > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Board of " + width + "x" + height + " cells is too large");
+		}
+		this.width = width;
+		this.height = height;
+		int count = (width * height + PAGE_SIZE - 1) >>> PAGE_SHIFT;
+		this.pages = new int[count][];
+		this.foodPages = new long[count][];
+		boolean indexed = width * height <= INDEX_LIMIT;
+		this.free = indexed ? new int[Math.max(0, (width - 2) * (height - 2))] : null;
+		this.freeSlot = indexed ? new int[width * height] : null;
+		this.clear();
+	}
+
+	/**
+	 * Empties every cell inside the walls and removes all food. Pages already allocated are
+	 * kept for the next round.
+	 */
+	public void clear() {
+		for (int index = 0; index < pages.length; index++) {
+			if (pages[index] != null) fillPage(index, pages[index]);
+			if (foodPages[index] != null) Arrays.fill(foodPages[index], 0);
+		}
+		foodCount = 0;
+
+		if (free != null) {
+			Arrays.fill(freeSlot, 0);
+			freeCount = 0;
+			for (int y = 1; y < height - 1; y++) {
+				for (int x = 1; x < width - 1; x++) {
+					int cell = cell(x, y);
+					free[freeCount] = cell;
+					freeSlot[cell] = ++freeCount;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Brings the free cell index up to date with the current contents of the cell.
+	 */
+	void reindex(int cell) {
+		if (free == null) return;
+		boolean isFree = isFree(cell);
+		int slot = freeSlot[cell];
+		if (isFree && slot == 0) {
+			free[freeCount] = cell;
+			freeSlot[cell] = ++freeCount;
+		} else if (!isFree && slot != 0) {
+			int last = free[--freeCount];
+			free[slot - 1] = last;
+			freeSlot[last] = slot;
+			freeSlot[cell] = 0;
+		}
+	}
+
+	/**
+	 * Picks a uniformly random cell that is empty and has no food, or returns -1 if there is
+	 * none. Boards too large to index sample instead and may give up on a crowded board.
+	 */
+	public int randomFreeCell(Rng random) {
+		if (free != null) {
+			return freeCount == 0 ? -1 : free[random.nextInt(freeCount)];
+		}
+		for (int attempt = 0; attempt < SAMPLE_ATTEMPTS; attempt++) {
+			int cell = cell(1 + random.nextInt(width - 2), 1 + random.nextInt(height - 2));
+			if (isFree(cell)) return cell;
+		}
+		return -1;
+	}
+
+	public boolean isFree(int cell) {
+		return get(cell) == EMPTY && !hasFood(cell);
+	}
+
+	private boolean isBorder(int cell) {
+		int x = cell % width;
+		int y = cell / width;
+		return x == 0 || y == 0 || x == width - 1 || y == height - 1;
+	}
+
+	private int[] page(int cell) {
+		int index = cell >>> PAGE_SHIFT;
+		int[] page = pages[index];
+		if (page == null) {
+			page = new int[PAGE_SIZE];
+			fillPage(index, page);
+			pages[index] = page;
+			allocatedPages++;
+		}
+		return page;
+	}
+
+	private void fillPage(int index, int[] page) {
+		Arrays.fill(page, EMPTY);
+		int first = index << PAGE_SHIFT;
+		int last = Math.min(first + PAGE_SIZE, width * height);
+		for (int y = first / width; y <= (last - 1) / width; y++) {
+			int rowStart = Math.max(first, y * width);
+			int rowEnd = Math.min(last, (y + 1) * width);
+			if (y == 0 || y == height - 1) {
+				Arrays.fill(page, rowStart - first, rowEnd - first, WALL);
+				continue;
+			}
+			if (rowStart == y * width) page[rowStart - first] = WALL;
+			if (rowEnd == (y + 1) * width) page[rowEnd - 1 - first] = WALL;
+		}
+	}
+
+	/**
+	 * Allocates the page holding the cell ahead of time. Writes to a missing page allocate
+	 * it and are not safe to run concurrently, writes to different cells of existing pages
+	 * are.
+	 */
+	void reserve(int cell) {
+		page(cell);
+	}
+
+	public int cell(int x, int y) {
+		return y * width + x;
+	}
+
+	public int cell(IntVector2 vector) {
+		return vector.getY() * width + vector.getX();
+	}
+
+	/**
+	 * Cell offset of one step in the given direction.
+	 */
+	public int offset(IntVector2 direction) {
+		return direction.getY() * width + direction.getX();
+	}
+
+	public int x(int cell) {
+		return cell % width;
+	}
+
+	public int y(int cell) {
+		return cell / width;
+	}
+
+	public int get(int cell) {
+		int[] page = pages[cell >>> PAGE_SHIFT];
+		if (page == null) return isBorder(cell) ? WALL : EMPTY;
+		return page[cell & PAGE_MASK];
+	}
+
+	public void set(int cell, int code) {
+		page(cell)[cell & PAGE_MASK] = code;
+		reindex(cell);
+	}
+
+	/**
+	 * Writes a cell without touching the free cell index, for writers running in parallel.
+	 * The cell has to be passed to {@link #reindex(int)} once they are done.
+	 */
+	void setDeferred(int cell, int code) {
+		page(cell)[cell & PAGE_MASK] = code;
+	}
+
+	public boolean isEmpty(int cell) {
+		return get(cell) == EMPTY;
+	}
+
+	public boolean hasFood(int cell) {
+		long[] bits = foodPages[cell >>> PAGE_SHIFT];
+		return bits != null && (bits[(cell & PAGE_MASK) >>> 6] & (1L << cell)) != 0;
+	}
+
+	public void addFood(int cell) {
+		int index = cell >>> PAGE_SHIFT;
+		long[] bits = foodPages[index];
+		if (bits == null) {
+			bits = new long[FOOD_WORDS];
+			foodPages[index] = bits;
+		}
+		int word = (cell & PAGE_MASK) >>> 6;
+		if ((bits[word] & (1L << cell)) == 0) {
+			bits[word] |= 1L << cell;
+			foodCount++;
+			reindex(cell);
+		}
+	}
+
+	public void removeFood(int cell) {
+		long[] bits = foodPages[cell >>> PAGE_SHIFT];
+		if (bits == null) return;
+		int word = (cell & PAGE_MASK) >>> 6;
+		if ((bits[word] & (1L << cell)) != 0) {
+			bits[word] &= ~(1L << cell);
+			foodCount--;
+			reindex(cell);
+		}
+	}
+
+	/**
+	 * Returns the first food cell at or after the given cell, or -1 if there is none.
+	 */
+	public int nextFood(int fromCell) {
+		return nextFood(fromCell, width * height);
+	}
+
+	/**
+	 * Returns the first food cell in {@code [fromCell, toCell)}, or -1 if there is none.
+	 */
+	public int nextFood(int fromCell, int toCell) {
+		if (foodCount == 0 || fromCell < 0) return -1;
+		int lastPage = (toCell - 1) >>> PAGE_SHIFT;
+		int index = fromCell >>> PAGE_SHIFT;
+		int word = (fromCell & PAGE_MASK) >>> 6;
+		long mask = -1L << fromCell;
+		for (; index <= lastPage; index++, word = 0, mask = -1L) {
+			long[] bits = foodPages[index];
+			if (bits == null) continue;
+			for (; word < FOOD_WORDS; word++, mask = -1L) {
+				long found = bits[word] & mask;
+				if (found != 0) {
+					int cell = (index << PAGE_SHIFT) + (word << 6) + Long.numberOfTrailingZeros(found);
+					return cell < toCell ? cell : -1;
+				}
+			}
+		}
+		return -1;
+	}
+
+	public int getFoodCount() {
+		return foodCount;
+	}
+
+	/**
+	 * Number of cell pages in use, each holds {@link #PAGE_SIZE} cells.
+	 */
+	public int getAllocatedPages() {
+		return allocatedPages;
+	}
+
+	/**
+	 * Copies the cell codes into the given array, food cells become {@link GameSnapshot#FOOD}.
+	 */
+	public void copyTo(int[] target) {
+		copyTo(target, 0, 0, width, height);
+	}
+
+	/**
+	 * Copies a window of the board into the given array, row by row, food cells become
+	 * {@link GameSnapshot#FOOD}. The window must lie within the board.
+	 */
+	public void copyTo(int[] target, int originX, int originY, int columns, int rows) {
+		for (int row = 0; row < rows; row++) {
+			int from = cell(originX, originY + row);
+			int to = from + columns;
+			int offset = row * columns - from;
+			for (int cell = from; cell < to; ) {
+				int pageEnd = Math.min(to, ((cell >>> PAGE_SHIFT) + 1) << PAGE_SHIFT);
+				int[] page = pages[cell >>> PAGE_SHIFT];
+				if (page != null) {
+					System.arraycopy(page, cell & PAGE_MASK, target, cell + offset, pageEnd - cell);
+				} else {
+					for (int c = cell; c < pageEnd; c++) {
+						target[c + offset] = isBorder(c) ? WALL : EMPTY;
+					}
+				}
+				cell = pageEnd;
+			}
+			for (int food = nextFood(from, to); food >= 0; food = nextFood(food + 1, to)) {
+				target[food + offset] = GameSnapshot.FOOD;
+			}
+		}
+	}
+
+	int checkpointSize() {
+		int foodPageCount = 0;
+		for (long[] bits : foodPages) {
+			if (bits != null) foodPageCount++;
+		}
+		return 20 + allocatedPages * (4 + 4 * PAGE_SIZE) + foodPageCount * (4 + 8 * FOOD_WORDS) + 4 * Math.max(0, freeCount);
+	}
+
+	/**
+	 * Writes the allocated cell pages, the food pages and the free cell list, each page
+	 * behind its index. The order of the free list is kept since it decides which cell
+	 * a random pick lands on.
+	 */
+	void checkpoint(ByteBuffer out) {
+		out.putInt(allocatedPages);
+		for (int index = 0; index < pages.length; index++) {
+			if (pages[index] == null) continue;
+			out.putInt(index);
+			out.asIntBuffer().put(pages[index]);
+			out.position(out.position() + 4 * PAGE_SIZE);
+		}
+
+		int foodPageCount = 0;
+		for (long[] bits : foodPages) {
+			if (bits != null) foodPageCount++;
+		}
+		out.putInt(foodPageCount);
+		for (int index = 0; index < foodPages.length; index++) {
+			if (foodPages[index] == null) continue;
+			out.putInt(index);
+			out.asLongBuffer().put(foodPages[index]);
+			out.position(out.position() + 8 * FOOD_WORDS);
+		}
+		out.putInt(foodCount);
+
+		out.putInt(free == null ? -1 : freeCount);
+		if (free != null) {
+			out.asIntBuffer().put(free, 0, freeCount);
+			out.position(out.position() + 4 * freeCount);
+		}
+	}
+
+	/**
+	 * Replaces the whole contents of this board, which must have the size it was written
+	 * with, and rebuilds the slots of the free cell index.
+	 */
+	void restore(ByteBuffer in) {
+		Arrays.fill(pages, null);
+		allocatedPages = in.getInt();
+		for (int i = 0; i < allocatedPages; i++) {
+			int[] page = new int[PAGE_SIZE];
+			pages[in.getInt()] = page;
+			in.asIntBuffer().get(page);
+			in.position(in.position() + 4 * PAGE_SIZE);
+		}
+
+		Arrays.fill(foodPages, null);
+		int foodPageCount = in.getInt();
+		for (int i = 0; i < foodPageCount; i++) {
+			long[] bits = new long[FOOD_WORDS];
+			foodPages[in.getInt()] = bits;
+			in.asLongBuffer().get(bits);
+			in.position(in.position() + 8 * FOOD_WORDS);
+		}
+		foodCount = in.getInt();
+
+		int count = in.getInt();
+		if ((count >= 0) != (free != null)) throw new IllegalStateException("Checkpoint of a board of another size");
+		if (free != null) {
+			freeCount = count;
+			in.asIntBuffer().get(free, 0, count);
+			in.position(in.position() + 4 * count);
+			Arrays.fill(freeSlot, 0);
+			for (int i = 0; i < count; i++) {
+				freeSlot[free[i]] = i + 1;
+			}
+		}
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+}
@@ -0,0 +1,113 @@
+package snake;
+
+/**
+ * Base of the bots that play on their own. A bot makes at most one decision per game
+ * tick, from what is on the board, and only when its head has moved or the way ahead got
+ * blocked since the last one. It never presses reset or quit.
+ */
+public abstract class BotController implements Controller {
+
+	protected static final IntVector2[] DIRECTIONS = new IntVector2[] {
+		Controller.UP, Controller.RIGHT, Controller.DOWN, Controller.LEFT
+	};
+
+	protected final Player player;
+	protected final Game game;
+	protected final Board board;
+	protected final int[] offsets = new int[DIRECTIONS.length];
+	protected BotSearch search;
+	private IntVector2 direction;
+	private long decidedTick = -1;
+	private int decidedHead = -1;
+
+	protected BotController(Player player, Game game) {
+		this.player = player;
+		this.game = game;
+		this.board = game.getBoard();
+		for (int d = 0; d < DIRECTIONS.length; d++) {
+			offsets[d] = board.offset(DIRECTIONS[d]);
+		}
+	}
+
+	/**
+	 * Creates a bot by name: random, greedy, path or tron.
+	 */
+	public static Controller create(String kind, Player player, Game game, long seed) {
+		switch (kind.toLowerCase()) {
+			case "random": return new RandomWalkController(player, game, seed);
+			case "greedy": return new GreedyController(player, game);
+			case "path": return new PathfindingController(player, game);
+			case "tron": return new TronController(player, game);
+			default: throw new IllegalArgumentException("Unknown bot " + kind);
+		}
+	}
+
+	/**
+	 * Picks the index of the next direction, the head is the current head cell and
+	 * current the index of the direction decided last time, or -1.
+	 */
+	protected abstract int decide(int head, int current);
+
+	@Override
+	public void poll() {
+		long tick = game.getTick();
+		if (tick == decidedTick || !player.alive()) return;
+		decidedTick = tick;
+
+		int head = player.getSnakeHead();
+		int current = -1;
+		for (int d = 0; d < DIRECTIONS.length; d++) {
+			if (DIRECTIONS[d] == direction) current = d;
+		}
+		if (head == decidedHead && current >= 0 && isFree(head + offsets[current])) return;
+		decidedHead = head;
+
+		// buffers of the polling thread, bots may be polled from different threads
+		search = BotSearch.get();
+		int next = decide(head, current);
+		if (next >= 0) direction = DIRECTIONS[next];
+	}
+
+	protected boolean isFree(int cell) {
+		return board.isEmpty(cell);
+	}
+
+	/**
+	 * The free direction leading into the most open space, preferring the current one.
+	 */
+	protected int roomiest(int head, int current, int limit) {
+		int best = -1;
+		int bestArea = 0;
+		for (int i = 0; i < DIRECTIONS.length; i++) {
+			int d = current < 0 ? i : (current + i) % DIRECTIONS.length;
+			int next = head + offsets[d];
+			if (!isFree(next)) continue;
+			int area = search.reachable(board, next, head, limit, offsets);
+			if (area > bestArea) {
+				best = d;
+				bestArea = area;
+			}
+		}
+		return best;
+	}
+
+	@Override
+	public Player getPlayer() {
+		return player;
+	}
+
+	@Override
+	public IntVector2 getDirection() {
+		return direction;
+	}
+
+	@Override
+	public boolean getGameReset() {
+		return false;
+	}
+
+	@Override
+	public boolean getGameQuit() {
+		return false;
+	}
+}
@@ -0,0 +1,106 @@
+package snake;
+
+import java.util.Arrays;
+
+/**
+ * Breadth first searches for the bots, run on preallocated primitive buffers so that a
+ * decision never allocates. Every search stops after {@link #BUDGET} cells, which bounds
+ * both its time and its memory whatever the size of the board; visited cells are kept in
+ * a small open addressing table that is cleared by bumping a stamp. Controllers are
+ * polled from one thread at a time, each thread gets its own buffers.
+ */
+final class BotSearch {
+
+	static final int BUDGET = 4096;
+	private static final int TABLE_MASK = BUDGET * 2 - 1;
+
+	private static final ThreadLocal<BotSearch> LOCAL = ThreadLocal.withInitial(BotSearch::new);
+
+	private final int[] queue = new int[BUDGET];
+	private final byte[] firstStep = new byte[BUDGET];
+	private final int[] keys = new int[BUDGET * 2];
+	private final int[] stamps = new int[BUDGET * 2];
+	private int stamp;
+
+	static BotSearch get() {
+		return LOCAL.get();
+	}
+
+	private void begin() {
+		stamp++;
+		if (stamp == 0) {
+			Arrays.fill(stamps, 0);
+			stamp = 1;
+		}
+	}
+
+	/**
+	 * Marks the cell as visited, returns false if it already was.
+	 */
+	private boolean visit(int cell) {
+		int slot = (cell * 0x9E3779B9) >>> 7 & TABLE_MASK;
+		while (stamps[slot] == stamp) {
+			if (keys[slot] == cell) return false;
+			slot = (slot + 1) & TABLE_MASK;
+		}
+		stamps[slot] = stamp;
+		keys[slot] = cell;
+		return true;
+	}
+
+	/**
+	 * Index of the first step, into the given offsets, on a shortest path through empty
+	 * cells from the head to the nearest food, or -1 if no food is within the budget.
+	 */
+	int nearestFood(Board board, int head, int[] offsets) {
+		begin();
+		visit(head);
+		int tail = 0;
+
+		for (int d = 0; d < offsets.length; d++) {
+			int next = head + offsets[d];
+			if (!board.isEmpty(next) || !visit(next)) continue;
+			if (board.hasFood(next)) return d;
+			queue[tail] = next;
+			firstStep[tail] = (byte) d;
+			tail++;
+		}
+
+		for (int front = 0; front < tail; front++) {
+			int cell = queue[front];
+			for (int d = 0; d < offsets.length; d++) {
+				int next = cell + offsets[d];
+				if (!board.isEmpty(next) || !visit(next)) continue;
+				if (board.hasFood(next)) return firstStep[front];
+				if (tail == BUDGET) return -1;
+				queue[tail] = next;
+				firstStep[tail] = firstStep[front];
+				tail++;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Counts the empty cells reachable from the given empty cell, without going through
+	 * the excluded cell, stopping once the limit is reached.
+	 */
+	int reachable(Board board, int start, int excluded, int limit, int[] offsets) {
+		limit = Math.min(limit, BUDGET);
+		begin();
+		visit(excluded);
+		visit(start);
+		queue[0] = start;
+		int tail = 1;
+
+		for (int front = 0; front < tail && tail < limit; front++) {
+			int cell = queue[front];
+			for (int d = 0; d < offsets.length && tail < limit; d++) {
+				int next = cell + offsets[d];
+				if (!board.isEmpty(next) || !visit(next)) continue;
+				queue[tail++] = next;
+			}
+		}
+		return tail;
+	}
+}
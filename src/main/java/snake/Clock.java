@@ -0,0 +1,17 @@
+package snake;
+
+/**
+ * Source of time for the tick engine. The system clock follows the wall clock and
+ * parks the calling thread, a virtual clock simply jumps forward so that a game can
+ * run as fast as the cpu allows.
+ */
+public interface Clock {
+
+	public long nanoTime();
+
+	/**
+	 * Blocks until the clock reaches the given deadline. Returns early if the calling
+	 * thread is interrupted.
+	 */
+	public void parkUntil(long deadlineNanos);
+}
@@ -9,6 +9,13 @@ public interface Controller {
 	
 	public Player getPlayer();
 	
+	/**
+	 * Samples the device once, the getters below answer from the sampled state until
+	 * the next call.
+	 */
+	public default void poll() {
+	}
+
 	public IntVector2 getDirection();
 
 	public boolean getGameReset();
@@ -1,35 +1,117 @@
 package snake;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Polls every controller once per cycle at a fixed rate and only forwards changes,
+ * directions go to the player's mailbox and reset / quit fire on the press.
+ */
 public class ControllerRunner implements Runnable {
 
+	public static final int DEFAULT_POLL_HZ = 250;
+
 	private ArrayList<Controller> controllers = new ArrayList<Controller>();
+	private IntVector2[] lastDirections = new IntVector2[0];
+	private boolean[] lastResets = new boolean[0];
+	private boolean[] lastQuits = new boolean[0];
 	private Thread mainThread;
-	private boolean stop;
+	private volatile boolean stop;
 	private Game game;
+	private final long pollNanos;
+	private volatile long cycles;
 
 	public ControllerRunner(Game game, Thread main) {
+		this(game, main, DEFAULT_POLL_HZ);
+	}
+
+	public ControllerRunner(Game game, Thread main, int pollHz) {
 		this.mainThread = main;
 		this.game = game;
+		this.pollNanos = TimeUnit.SECONDS.toNanos(1) / pollHz;
 	}
 	
-	public void addController(Controller controller) {
+	public synchronized void addController(Controller controller) {
 		this.controllers.add(controller);
+		int size = this.controllers.size();
+		this.lastDirections = Arrays.copyOf(this.lastDirections, size);
+		this.lastResets = Arrays.copyOf(this.lastResets, size);
+		this.lastQuits = Arrays.copyOf(this.lastQuits, size);
+	}
+	
+	/**
+	 * Stops polling the controller, it no longer sends anything to its player.
+	 */
+	public synchronized void removeController(Controller controller) {
+		int index = this.controllers.indexOf(controller);
+		if (index < 0) return;
+		this.controllers.remove(index);
+		int size = this.controllers.size();
+		System.arraycopy(this.lastDirections, index + 1, this.lastDirections, index, size - index);
+		System.arraycopy(this.lastResets, index + 1, this.lastResets, index, size - index);
+		System.arraycopy(this.lastQuits, index + 1, this.lastQuits, index, size - index);
+		this.lastDirections = Arrays.copyOf(this.lastDirections, size);
+		this.lastResets = Arrays.copyOf(this.lastResets, size);
+		this.lastQuits = Arrays.copyOf(this.lastQuits, size);
 	}
 	
 	public void stop() {
 		stop = true;
 	}
+
+	public long getPollNanos() {
+		return pollNanos;
+	}
+
+	public long getCycles() {
+		return cycles;
+	}
+
+	/**
+	 * Polls each controller exactly once and delivers whatever changed since the
+	 * previous cycle. Controllers may be added from other threads in between.
+	 */
+	public synchronized void pollOnce() {
+		LatencyTracer tracer = game.getLatencyTracer();
+		for (int i = 0; i < controllers.size(); i++) {
+			Controller controller = controllers.get(i);
+			controller.poll();
+
+			IntVector2 direction = controller.getDirection();
+			if (direction != lastDirections[i]) {
+				lastDirections[i] = direction;
+				if (tracer != null && direction != null) tracer.polled(controller.getPlayer().getId() - 1);
+				controller.getPlayer().setMovementDirection(direction);
+			}
+
+			boolean reset = controller.getGameReset();
+			if (reset != lastResets[i]) {
+				lastResets[i] = reset;
+				if (reset) game.reset(true);
+			}
+
+			boolean quit = controller.getGameQuit();
+			if (quit != lastQuits[i]) {
+				lastQuits[i] = quit;
+				if (quit) game.quit(true);
+			}
+		}
+		cycles++;
+
+		GameMetrics metrics = game.getMetrics();
+		if (metrics != null) metrics.recordPoll();
+	}
 	
 	@Override
 	public void run() {
+		long next = System.nanoTime();
 		while (!stop && this.mainThread.isAlive()) {
-			for (Controller controller : controllers) {
-				game.reset(controller.getGameReset());
-				game.quit(controller.getGameQuit());
-				controller.getPlayer().setMovementDirection(controller.getDirection());
-			}
+			pollOnce();
+			next += pollNanos;
+			long now = System.nanoTime();
+			if (now - next > pollNanos) next = now;
+			SystemClock.INSTANCE.parkUntil(next);
 		}
 	}
 }
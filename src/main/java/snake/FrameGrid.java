@@ -0,0 +1,123 @@
+package snake;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import com.googlecode.lanterna.TextColor;
+
+/**
+ * Double buffered character grid. A frame is composed into the back buffer, flushing
+ * compares it against what is already on screen and only sends the cells that changed,
+ * runs of changed cells in the same color are sent with a single cursor move.
+ */
+public class FrameGrid {
+
+	private static final TextColor.ANSI[] COLORS = TextColor.ANSI.values();
+
+	private final int cols;
+	private final int rows;
+
+	private char[] back;
+	private byte[] backColors;
+	private char[] front;
+	private byte[] frontColors;
+
+	public FrameGrid(int cols, int rows) {
+		this.cols = cols;
+		this.rows = rows;
+		this.back = new char[cols * rows];
+		this.backColors = new byte[cols * rows];
+		this.front = new char[cols * rows];
+		this.frontColors = new byte[cols * rows];
+		this.clear();
+		this.invalidate();
+	}
+
+	/**
+	 * Blanks the back buffer before a new frame is composed.
+	 */
+	public void clear() {
+		Arrays.fill(back, ' ');
+		Arrays.fill(backColors, (byte) TextColor.ANSI.WHITE.ordinal());
+	}
+
+	/**
+	 * Marks the screen as freshly cleared, call after clearing the terminal itself.
+	 */
+	public void invalidate() {
+		Arrays.fill(front, ' ');
+		Arrays.fill(frontColors, (byte) TextColor.ANSI.WHITE.ordinal());
+	}
+
+	public void put(int x, int y, char c, TextColor.ANSI color) {
+		if (x < 0 || x >= cols || y < 0 || y >= rows) return;
+		int i = y * cols + x;
+		back[i] = c;
+		backColors[i] = (byte) color.ordinal();
+	}
+
+	public void putString(int x, int y, String str, TextColor.ANSI color) {
+		for (int i = 0; i < str.length(); i++) {
+			put(x + i, y, str.charAt(i), color);
+		}
+	}
+
+	/**
+	 * Sends the difference between the composed frame and the screen to the renderer
+	 * and returns the number of cells written. The renderer still needs to be flushed.
+	 */
+	public int flush(Renderer renderer) throws IOException {
+		int written = 0;
+		int cursorX = -1;
+		int cursorY = -1;
+		int currentColor = -1;
+
+		for (int y = 0; y < rows; y++) {
+			int x = 0;
+			while (x < cols) {
+				int i = y * cols + x;
+				if (back[i] == front[i] && backColors[i] == frontColors[i]) {
+					x++;
+					continue;
+				}
+
+				byte color = backColors[i];
+				if (color != currentColor) {
+					renderer.setColor(COLORS[color]);
+					currentColor = color;
+				}
+				if (x != cursorX || y != cursorY) {
+					renderer.moveTo(x, y);
+				}
+
+				// one run of changed cells sharing a color
+				while (x < cols && backColors[i] == color && 
+					   (back[i] != front[i] || backColors[i] != frontColors[i])) {
+					renderer.put(back[i]);
+					written++;
+					x++;
+					i++;
+				}
+				cursorX = x;
+				cursorY = y;
+			}
+		}
+
+		char[] chars = front;
+		front = back;
+		back = chars;
+		byte[] colors = frontColors;
+		frontColors = backColors;
+		backColors = colors;
+
+		return written;
+	}
+
+	public int getCols() {
+		return cols;
+	}
+
+	public int getRows() {
+		return rows;
+	}
+}
@@ -1,59 +1,257 @@
 package snake;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 public class Game {
 	
-	private final ReadWriteLock objectLock = new ReentrantReadWriteLock();
+	private final TimedReadWriteLock objectLock = new TimedReadWriteLock();
 	
 	private final List<Player> players = new ArrayList<Player>();
-	private final Map<IntVector2, Player> snakeSegments = new HashMap<IntVector2, Player>();
-	private final Set<IntVector2> foodSpots = new HashSet<IntVector2>();
+	private final PlayerTable table = new PlayerTable();
 	private final Boundaries boundaries;
+	private final Board board;
+	private final MoveResolver mover;
+	private final long seed;
 	
+	public static final long TICK_MILLIS = 10;
+	public static final int MAX_PLAYERS = 4096;
+
+	static final int CHECKPOINT_MAGIC = 0x534E4B43; // SNKC
+	static final byte CHECKPOINT_VERSION = 1;
+
 	private final long timeBetweenFood = 2000; // 2 seconds
 	private long lastFoodSpawn;
 	private volatile boolean quit;
 	private volatile boolean wasJustReset = false;
+	private volatile boolean resetRequested = false;
 	private Thread gameRunner;
+	private final TickEngine engine;
+	private final Rng random;
+	private volatile long tick;
 
 	private boolean tron;
 	private final long timeBetweenResets = 1000; // 1 second
-	private long lastReset;
+	private long lastReset = -timeBetweenResets;
+	private long resetPause = 2500; // 2.5 seconds
+	private long resumeTime;
+
+	private volatile boolean publishSnapshots;
+	private int viewCols;
+	private int viewRows;
+	private volatile boolean changed = true;
+	private volatile GameSnapshot snapshot;
+
+	private InputRecorder recorder;
+	private volatile GameMetrics metrics;
+	private volatile LatencyTracer tracer;
+	private volatile ScoreStore scores;
+	private boolean matchRecorded;
+	private final Queue<Join> joins = new ConcurrentLinkedQueue<Join>();
 
 	private static final Color[] COLORS = new Color[] {Color.Yellow, Color.Magenta, Color.Cyan, Color.White};
 	
 	public Game(int rows, int cols, Thread gameRunner, boolean tron) {
+		this(rows, cols, gameRunner, tron, SystemClock.INSTANCE, System.nanoTime());
+	}
+
+	/**
+	 * Creates a game driven by the given clock, a game without a runner thread is stepped
+	 * by calling {@link #tick()} directly. Two games with the same seed and the same
+	 * inputs play out identically.
+	 */
+	public Game(int rows, int cols, Thread gameRunner, boolean tron, Clock clock, long seed) {
 		this.boundaries = new Boundaries(1, cols - 1, 1, rows - 1);
-		this.reset(true);
+		this.board = new Board(cols, rows);
+		this.mover = new MoveResolver(board, table, players);
+		this.engine = new TickEngine(clock, TICK_MILLIS);
+		this.seed = seed;
+		this.random = new Rng(seed);
+		this.applyReset();
 		this.gameRunner = gameRunner;
 		this.tron = tron;
 	}
 
+	/**
+	 * Upper bound of the bytes {@link #checkpoint(ByteBuffer)} writes right now.
+	 */
+	public int checkpointSize() {
+		try {
+			this.objectLock.readLock().lock();
+			int size = 96 + board.checkpointSize();
+			for (int i = 0; i < players.size(); i++) {
+				Player player = players.get(i);
+				size += 2 + 3 * player.getName().length() + player.checkpointSize();
+			}
+			return size;
+		} finally {
+			this.objectLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Writes the whole game state to the buffer, little endian from its current position:
+	 * a header with the size, mode, seed, tick, random state and timers, then every player
+	 * and finally the board. Has to be called between ticks, by the thread running them or
+	 * while the game is stopped. A game restored from it plays on exactly like this one.
+	 */
+	public void checkpoint(ByteBuffer out) {
+		try {
+			this.objectLock.writeLock().lock();
+			out.order(ByteOrder.LITTLE_ENDIAN);
+			out.putInt(CHECKPOINT_MAGIC);
+			out.put(CHECKPOINT_VERSION);
+			out.putInt(board.getHeight());
+			out.putInt(board.getWidth());
+			out.put((byte) (tron ? 1 : 0));
+			out.putLong(seed);
+			out.putLong(tick);
+			out.putLong(random.getState());
+			out.putLong(lastFoodSpawn);
+			out.putLong(lastReset);
+			out.putLong(resetPause);
+			out.putLong(resumeTime);
+			out.put((byte) ((wasJustReset ? 1 : 0) | (resetRequested ? 2 : 0) | (matchRecorded ? 4 : 0)));
+
+			out.putInt(players.size());
+			for (int i = 0; i < players.size(); i++) {
+				Player player = players.get(i);
+				byte[] name = player.getName().getBytes(StandardCharsets.UTF_8);
+				out.putShort((short) name.length);
+				out.put(name);
+				out.put((byte) player.getColor().ordinal());
+				player.checkpoint(out);
+			}
+
+			board.checkpoint(out);
+		} finally {
+			this.objectLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Creates a game from a buffer written by {@link #checkpoint(ByteBuffer)}.
+	 */
+	public static Game restore(ByteBuffer in, Thread gameRunner, Clock clock) {
+		in.order(ByteOrder.LITTLE_ENDIAN);
+		if (in.getInt() != CHECKPOINT_MAGIC) throw new IllegalArgumentException("Not a game checkpoint");
+		byte version = in.get();
+		if (version != CHECKPOINT_VERSION) throw new IllegalArgumentException("Unsupported checkpoint version " + version);
+
+		int rows = in.getInt();
+		int cols = in.getInt();
+		boolean tron = in.get() != 0;
+		long seed = in.getLong();
+		Game game = new Game(rows, cols, gameRunner, tron, clock, seed);
+		game.restoreState(in);
+		return game;
+	}
+
+	private void restoreState(ByteBuffer in) {
+		try {
+			this.objectLock.writeLock().lock();
+			this.tick = in.getLong();
+			this.random.setState(in.getLong());
+			this.lastFoodSpawn = in.getLong();
+			this.lastReset = in.getLong();
+			this.resetPause = in.getLong();
+			this.resumeTime = in.getLong();
+			byte flags = in.get();
+			this.wasJustReset = (flags & 1) != 0;
+			this.resetRequested = (flags & 2) != 0;
+			this.matchRecorded = (flags & 4) != 0;
+
+			int count = in.getInt();
+			Color[] colors = Color.values();
+			for (int i = 0; i < count; i++) {
+				byte[] name = new byte[in.getShort() & 0xFFFF];
+				in.get(name);
+				Color color = colors[in.get()];
+				table.add();
+				players.add(Player.restore(boundaries, board, i + 1, new String(name, StandardCharsets.UTF_8), color, this, in));
+			}
+
+			board.restore(in);
+			changed = true;
+		} finally {
+			this.objectLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Sets how long the game stands still after a reset, in game time. Training runs
+	 * that nobody watches set it to zero.
+	 */
+	void setResetPause(long millis) {
+		this.resetPause = millis;
+	}
+
+	/**
+	 * Sets from how many players on a tick moves them in parallel, see {@link MoveResolver}.
+	 */
+	void setParallelThreshold(int players) {
+		mover.setParallelThreshold(players);
+	}
+
+	/**
+	 * Game time in milliseconds, advances by exactly {@link #TICK_MILLIS} every tick.
+	 */
+	long currentTime() {
+		return this.tick * TICK_MILLIS;
+	}
+
+	public long getTick() {
+		return this.tick;
+	}
+
+	public long getSeed() {
+		return this.seed;
+	}
+
+	/**
+	 * Starts logging every input this game consumes. Must be called before any player
+	 * joins so that the log can rebuild the game from scratch.
+	 */
+	public void record(InputRecorder recorder) {
+		try {
+			this.objectLock.writeLock().lock();
+			if (!players.isEmpty()) throw new IllegalStateException("Players have already joined");
+			recorder.header(seed, board.getHeight(), board.getWidth(), tron);
+			this.recorder = recorder;
+		} finally {
+			this.objectLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Requests a reset, it is applied at the start of the next tick.
+	 */
 	public void reset(boolean shouldReset) {
-		if (!shouldReset) return;
+		if (shouldReset) resetRequested = true;
+	}
 
+	private void applyReset() {
 		try {
 			this.objectLock.writeLock().lock();
 			if (wasJustReset) return;
 
-			long end = System.currentTimeMillis();
+			long end = currentTime();
 			long delta = end - lastReset;
 			if (delta < timeBetweenResets) return;
 			lastReset = end;
 
-			foodSpots.clear();
 			wasJustReset = true;
-			this.snakeSegments.clear();
+			matchRecorded = false;
+			this.board.clear();
 			players.forEach(player -> player.reset(tron));
+			changed = true;
 		} finally {
 			this.objectLock.writeLock().unlock();
 		}
@@ -61,10 +259,14 @@ public class Game {
 
 	public void quit(boolean quit) {
 		this.quit = quit;
-		if (quit)
+		if (quit && this.gameRunner != null)
 			this.gameRunner.interrupt();
 	}
 	
+	public boolean hasQuit() {
+		return this.quit;
+	}
+	
 	public int playerCount() {
 		try {
 			this.objectLock.readLock().lock();
@@ -74,20 +276,46 @@ public class Game {
 		}
 	}
 	
-	public Player addPlayer(String name) {		
+	/**
+	 * Seats a player right away, for setting a game up and for the thread running its
+	 * ticks. Other threads go through {@link #join(String, Consumer)}.
+	 */
+	public Player addPlayer(String name) {
+		return seat(name, tick + 1);
+	}
+
+	/**
+	 * Queues a player to be seated at the start of the next tick, which also records the
+	 * join with that tick. Joined is called on the ticking thread with the player, or with
+	 * null if the game is full or the name is taken.
+	 */
+	public void join(String name, Consumer<Player> joined) {
+		joins.add(new Join(name, joined));
+	}
+
+	private void applyJoins() {
+		Join join;
+		while ((join = joins.poll()) != null) {
+			join.joined.accept(seat(join.name, tick));
+		}
+	}
+
+	private Player seat(String name, long joinTick) {
 		try {
 			this.objectLock.writeLock().lock();
 			
-			if (players.size() > 3) return null;
+			if (players.size() >= MAX_PLAYERS) return null;
 			if (name == null) return null;
 			if (name.isEmpty()) return null;
 			if (players.stream().anyMatch(player -> 
 				player.getName().equalsIgnoreCase(name))) return null;
 			
-			Color color = COLORS[players.size()];
-			Player player = new Player(boundaries, foodSpots, snakeSegments, name, color, tron, this);
+			Color color = COLORS[players.size() % COLORS.length];
+			table.add();
+			Player player = new Player(boundaries, board, players.size() + 1, name, color, tron, this);
 			players.add(player);
-			this.snakeSegments.put(player.getSnakeHead(), player);
+			changed = true;
+			if (recorder != null) recorder.join(joinTick, player.getId(), name);
 			return player;
 			
 		} finally {
@@ -95,67 +323,261 @@ public class Game {
 		}
 	}
 	
+	/**
+	 * Callers hold the object lock.
+	 */
 	private int numAlivePlayers() {
-		try {
-			this.objectLock.readLock().lock();
-			return (int) this.players.stream().filter(Player::alive).count();
-		} finally {
-			this.objectLock.readLock().unlock();
+		boolean[] dead = this.table.dead;
+		int alive = 0;
+		for (int i = 0; i < this.table.size; i++) {
+			if (!dead[i]) alive++;
 		}
+		return alive;
 	}
 	
 	private void foodUpdate() {
-		long end = System.currentTimeMillis();
+		long end = currentTime();
 		if (end - lastFoodSpawn < timeBetweenFood) return;
 		lastFoodSpawn = end;
 
 		try {
 			this.objectLock.writeLock().lock();
 			if (tron) return;
-			this.foodSpots.add(Utils.randomVectorInBounds(boundaries));
+			spawnFood();
 		} finally {
 			this.objectLock.writeLock().unlock();
 		}
 	}
 
+	void spawnFood() {
+		int food = board.randomFreeCell(random);
+		if (food >= 0) {
+			this.board.addFood(food);
+			changed = true;
+		}
+	}
+
+	/**
+	 * Resets are only applied by the tick itself, so the flag needs no lock here.
+	 */
 	private boolean shouldSleep() {
-		try {
-			this.objectLock.writeLock().lock();
-			if (wasJustReset) {
-				wasJustReset = false;
-				return true;
-			} else {
-				return false;
-			}
-		} finally {
-			this.objectLock.writeLock().unlock();
+		if (wasJustReset) {
+			wasJustReset = false;
+			return true;
+		} else {
+			return false;
 		}
 	}
-	
+
+	/**
+	 * Runs the game on the tick engine until quit, parking between ticks.
+	 */
 	public void start() {
-		
-		while (!quit) {
-			if (shouldSleep()) {
-				try {
-					Thread.sleep(2500);
-				} catch (InterruptedException e) {
-				}
-			}
+		engine.run(() -> !quit, this::tick);
+		if (recorder != null) recorder.end(tick + 1);
+	}
+
+	/**
+	 * Advances the game by exactly one tick. Player movement, food spawning and
+	 * passive scoring all happen on tick boundaries so a game is reproducible
+	 * tick by tick.
+	 */
+	public void tick() {
+		GameMetrics metrics = this.metrics;
+		long start = metrics != null ? System.nanoTime() : 0;
+		this.tick++;
+		if (!joins.isEmpty()) applyJoins();
 
-			// after waking up
-			if (quit) break;
+		if (resetRequested) {
+			resetRequested = false;
+			if (recorder != null) recorder.reset(tick);
+			applyReset();
+		}
+
+		// every input a tick uses is taken from the mailboxes here, in one place
+		for (int i = 0; i < players.size(); i++) {
+			Player player = players.get(i);
+			if (player.latchInput()) {
+				if (recorder != null) recorder.direction(tick, player.getId(), player.getLatchedDirection());
+				if (tracer != null && player.getLatchedDirection() != null) tracer.latched(player.getId() - 1);
+			}
+		}
 
-			if (isGameOver()) continue;
+		long now = currentTime();
+		if (shouldSleep()) {
+			resumeTime = now + resetPause;
+		}
 
+		if (now >= resumeTime && !isGameOver()) {
 			foodUpdate();
-			
+
 			try {
 				this.objectLock.writeLock().lock();
-				players.forEach(Player::update);
+				mover.step();
 			} finally {
 				this.objectLock.writeLock().unlock();
 			}
+
+			LatencyTracer tracer = this.tracer;
+			if (tracer != null) tracer.moved(table, now, tick);
+
+			ScoreStore scores = this.scores;
+			if (scores != null && !matchRecorded && isGameOver()) {
+				matchRecorded = true;
+				scores.record(this);
+			}
 		}
+
+		if (publishSnapshots && changed) {
+			publishSnapshot();
+		}
+
+		if (metrics != null) {
+			metrics.recordTick(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Starts recording runtime metrics for this game and returns them, until then every
+	 * measuring point costs a single null check.
+	 */
+	public synchronized GameMetrics enableMetrics() {
+		if (metrics == null) {
+			GameMetrics created = new GameMetrics();
+			objectLock.setMetrics(created);
+			engine.setMetrics(created);
+			metrics = created;
+		}
+		return metrics;
+	}
+
+	/**
+	 * Starts following inputs from the controllers to the screen, see {@link LatencyTracer}.
+	 */
+	public synchronized LatencyTracer enableLatencyTracing() {
+		if (tracer == null) tracer = new LatencyTracer();
+		return tracer;
+	}
+
+	/**
+	 * Latency tracer of this game, or null while tracing is not enabled.
+	 */
+	public LatencyTracer getLatencyTracer() {
+		return tracer;
+	}
+
+	/**
+	 * Metrics of this game, or null while they are not enabled.
+	 */
+	public GameMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Records that something visible changed during this tick.
+	 */
+	void markChanged() {
+		changed = true;
+	}
+
+	/**
+	 * Turns on snapshot publishing of the whole board, games nobody watches skip building them.
+	 */
+	public void enableSnapshots() {
+		enableSnapshots(board.getWidth(), board.getHeight());
+	}
+
+	/**
+	 * Turns on snapshot publishing of a window of at most the given size, which follows the
+	 * players still alive.
+	 */
+	public void enableSnapshots(int cols, int rows) {
+		try {
+			this.objectLock.writeLock().lock();
+			if (publishSnapshots) return;
+			this.viewCols = Math.min(cols, board.getWidth());
+			this.viewRows = Math.min(rows, board.getHeight());
+			publishSnapshots = true;
+		} finally {
+			this.objectLock.writeLock().unlock();
+		}
+		publishSnapshot();
+	}
+
+	private void publishSnapshot() {
+		try {
+			this.objectLock.readLock().lock();
+			changed = false;
+
+			int originX = 0;
+			int originY = 0;
+			if (viewCols < board.getWidth() || viewRows < board.getHeight()) {
+				// center the window on the box around every live head, or on the leader if
+				// they do not all fit
+				boolean over = isGameOver();
+				int minX = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE;
+				int minY = Integer.MAX_VALUE, maxY = Integer.MIN_VALUE;
+				Player leader = null;
+				for (int i = 0; i < players.size(); i++) {
+					Player player = players.get(i);
+					if (!player.alive() && !over) continue;
+					int head = player.getSnakeHead();
+					minX = Math.min(minX, board.x(head));
+					maxX = Math.max(maxX, board.x(head));
+					minY = Math.min(minY, board.y(head));
+					maxY = Math.max(maxY, board.y(head));
+					if (leader == null || player.getScore() > leader.getScore()) leader = player;
+				}
+				if (leader != null && (maxX - minX >= viewCols || maxY - minY >= viewRows)) {
+					minX = maxX = board.x(leader.getSnakeHead());
+					minY = maxY = board.y(leader.getSnakeHead());
+				}
+				if (leader != null) {
+					originX = Math.max(0, Math.min(board.getWidth() - viewCols, (minX + maxX - viewCols) / 2));
+					originY = Math.max(0, Math.min(board.getHeight() - viewRows, (minY + maxY - viewRows) / 2));
+				}
+			}
+			int[] cells = new int[viewCols * viewRows];
+			board.copyTo(cells, originX, originY, viewCols, viewRows);
+
+			int count = players.size();
+			String[] names = new String[count];
+			Color[] colors = new Color[count];
+			int[] scores = new int[count];
+			boolean[] alive = new boolean[count];
+			for (int i = 0; i < count; i++) {
+				Player player = players.get(i);
+				names[i] = player.getName();
+				colors[i] = player.getColor();
+				scores[i] = player.getScore();
+				alive[i] = player.alive();
+			}
+
+			long version = snapshot == null ? 1 : snapshot.getVersion() + 1;
+			snapshot = new GameSnapshot(version, tick, originX, originY, viewCols, viewRows, 
+										board.getWidth(), board.getHeight(), cells, 
+										names, colors, scores, alive, isGameOver());
+		} finally {
+			this.objectLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Records the scores of every match of this game that ends from now on.
+	 */
+	public void setScoreStore(ScoreStore scores) {
+		this.scores = scores;
+	}
+
+	public ScoreStore getScoreStore() {
+		return scores;
+	}
+
+	/**
+	 * Latest published snapshot, never blocks. Null until snapshots are enabled.
+	 */
+	public GameSnapshot getSnapshot() {
+		return snapshot;
 	}
 
 	public boolean isGameOver() {
@@ -188,7 +610,23 @@ public class Game {
 	public Boundaries getBoundaries() {
 		return this.boundaries;
 	}
-	
+
+	public Board getBoard() {
+		return this.board;
+	}
+
+	PlayerTable getPlayerTable() {
+		return this.table;
+	}
+
+	Rng getRandom() {
+		return this.random;
+	}
+
+	public boolean isTron() {
+		return this.tron;
+	}
+
 	public void forEachPlayer(Consumer<Player> consumer) {
 		try {
 			this.objectLock.readLock().lock();
@@ -198,12 +636,27 @@ public class Game {
 		}
 	}
 	
-	public void forEachFoodSpot(Consumer<IntVector2> consumer) {
+	/**
+	 * Visits the board cell of every food spot.
+	 */
+	public void forEachFoodSpot(IntConsumer consumer) {
 		try {
 			this.objectLock.readLock().lock();
-			this.foodSpots.forEach(consumer);	
+			for (int food = board.nextFood(0); food >= 0; food = board.nextFood(food + 1)) {
+				consumer.accept(food);
+			}
 		} finally {
 			this.objectLock.readLock().unlock();
 		}
 	}
+
+	private static class Join {
+		private final String name;
+		private final Consumer<Player> joined;
+
+		private Join(String name, Consumer<Player> joined) {
+			this.name = name;
+			this.joined = joined;
+		}
+	}
 }
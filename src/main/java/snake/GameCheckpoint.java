@@ -0,0 +1,61 @@
+package snake;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Saves a game to a file and loads it again, for pausing an arena, moving it to another
+ * process or carrying it over a restart. The layout is the one of
+ * {@link Game#checkpoint(ByteBuffer)}, written with one channel write and read back
+ * from a mapped file.
+ */
+public final class GameCheckpoint {
+
+	private GameCheckpoint() {
+	}
+
+	/**
+	 * Writes the game to the file, same rules as {@link Game#checkpoint(ByteBuffer)}.
+	 */
+	public static void save(Game game, Path file) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(game.checkpointSize());
+		game.checkpoint(buffer);
+		buffer.flip();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, 
+													StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+	}
+
+	public static Game load(Path file, Thread gameRunner, Clock clock) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return Game.restore(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), gameRunner, clock);
+		} catch (IllegalArgumentException e) {
+			throw new IOException(e.getMessage() + ": " + file, e);
+		}
+	}
+
+	/**
+	 * Loads a checkpoint and plays it on for the given number of ticks without input.
+	 */
+	public static void main(String[] args) throws IOException {
+		long start = System.nanoTime();
+		Game game = load(Paths.get(args[0]), null, new VirtualClock());
+		double millis = (System.nanoTime() - start) / 1e6;
+		System.out.println("Restored tick " + game.getTick() + " in " + String.format("%.2f", millis) + "ms.");
+
+		long ticks = args.length > 1 ? Long.parseLong(args[1]) : 0;
+		for (long i = 0; i < ticks; i++) {
+			game.tick();
+		}
+		for (Player player : game.getPlayers()) {
+			System.out.println(player.getScoreDescription());
+		}
+	}
+}
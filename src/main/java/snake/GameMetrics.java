@@ -0,0 +1,251 @@
+package snake;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Runtime measurements of one game. Recording is lock free and only happens once metrics
+ * are enabled on the game, everything else checks for a null metrics object and moves on.
+ * Rates are averaged over windows of at least a second, shared by every reader.
+ */
+public class GameMetrics implements GameMetricsMBean {
+
+	private static final long RATE_WINDOW = TimeUnit.SECONDS.toNanos(1);
+
+	private final LogHistogram tickTime = new LogHistogram();
+	private final LogHistogram jitter = new LogHistogram();
+	private final LogHistogram lockWait = new LogHistogram();
+	private final LogHistogram lockHold = new LogHistogram();
+	private final LogHistogram frameTime = new LogHistogram();
+	private final LogHistogram cellsWritten = new LogHistogram();
+	private final LongAdder polls = new LongAdder();
+	private volatile long firstFrameMillis = -1;
+
+	private long windowStart = System.nanoTime();
+	private long windowTicks;
+	private long windowPolls;
+	private long windowAllocated = allocatedBytes();
+	private double tickRate;
+	private double pollRate;
+	private double allocationRate;
+
+	void recordTick(long nanos) {
+		tickTime.record(nanos);
+	}
+
+	void recordJitter(long nanos) {
+		jitter.record(nanos);
+	}
+
+	void recordLockWait(long nanos) {
+		lockWait.record(nanos);
+	}
+
+	void recordLockHold(long nanos) {
+		lockHold.record(nanos);
+	}
+
+	void recordFrame(long nanos, int cells) {
+		frameTime.record(nanos);
+		cellsWritten.record(cells);
+	}
+
+	void recordPoll() {
+		polls.increment();
+	}
+
+	/**
+	 * Bytes allocated so far by all live threads, or -1 if the JVM does not say.
+	 */
+	private static long allocatedBytes() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (!(threads instanceof com.sun.management.ThreadMXBean)) return -1;
+		com.sun.management.ThreadMXBean counting = (com.sun.management.ThreadMXBean) threads;
+		if (!counting.isThreadAllocatedMemorySupported() || !counting.isThreadAllocatedMemoryEnabled()) return -1;
+
+		long total = 0;
+		for (long bytes : counting.getThreadAllocatedBytes(counting.getAllThreadIds())) {
+			if (bytes > 0) total += bytes;
+		}
+		return total;
+	}
+
+	private synchronized void updateRates() {
+		long now = System.nanoTime();
+		long elapsed = now - windowStart;
+		if (elapsed < RATE_WINDOW) return;
+
+		long ticks = tickTime.getCount();
+		long polled = polls.sum();
+		long allocated = allocatedBytes();
+		double seconds = elapsed / 1e9;
+
+		tickRate = (ticks - windowTicks) / seconds;
+		pollRate = (polled - windowPolls) / seconds;
+		allocationRate = allocated < 0 || windowAllocated < 0 ? -1 : Math.max(0, allocated - windowAllocated) / seconds;
+
+		windowStart = now;
+		windowTicks = ticks;
+		windowPolls = polled;
+		windowAllocated = allocated;
+	}
+
+	/**
+	 * Publishes these metrics on the platform MBean server under {@code snake:type=Game}.
+	 */
+	public void register(String name) {
+		try {
+			ObjectName objectName = new ObjectName("snake:type=Game,name=" + ObjectName.quote(name));
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		} catch (JMException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static String time(long nanos) {
+		if (nanos < 10000) return nanos + "ns";
+		if (nanos < 10000000) return nanos / 1000 + "us";
+		return nanos / 1000000 + "ms";
+	}
+
+	/**
+	 * Short lines for an on screen overlay.
+	 */
+	public String[] describe() {
+		updateRates();
+		return new String[] {
+			String.format("tick %5.0f/s p50 %s p99 %s max %s", tickRate, 
+						  time(getTickP50Nanos()), time(getTickP99Nanos()), time(getTickMaxNanos())),
+			String.format("jitter p50 %s p99 %s max %s", 
+						  time(getJitterP50Nanos()), time(getJitterP99Nanos()), time(getJitterMaxNanos())),
+			String.format("lock wait p99 %s hold p99 %s", time(getLockWaitP99Nanos()), time(getLockHoldP99Nanos())),
+			String.format("frame p99 %s cells %.0f first %dms", time(getFrameP99Nanos()), getCellsWrittenPerFrame(), firstFrameMillis),
+			String.format("poll %.0f/s alloc %.1fMB/s", pollRate, allocationRate / (1 << 20))
+		};
+	}
+
+	@Override
+	public long getTicks() {
+		return tickTime.getCount();
+	}
+
+	@Override
+	public double getTicksPerSecond() {
+		updateRates();
+		return tickRate;
+	}
+
+	@Override
+	public double getTickMeanNanos() {
+		return tickTime.getMean();
+	}
+
+	@Override
+	public long getTickP50Nanos() {
+		return tickTime.getPercentile(50);
+	}
+
+	@Override
+	public long getTickP99Nanos() {
+		return tickTime.getPercentile(99);
+	}
+
+	@Override
+	public long getTickMaxNanos() {
+		return tickTime.getMax();
+	}
+
+	@Override
+	public long getJitterP50Nanos() {
+		return jitter.getPercentile(50);
+	}
+
+	@Override
+	public long getJitterP99Nanos() {
+		return jitter.getPercentile(99);
+	}
+
+	@Override
+	public long getJitterMaxNanos() {
+		return jitter.getMax();
+	}
+
+	@Override
+	public long getLockWaitP99Nanos() {
+		return lockWait.getPercentile(99);
+	}
+
+	@Override
+	public long getLockWaitMaxNanos() {
+		return lockWait.getMax();
+	}
+
+	@Override
+	public long getLockHoldP99Nanos() {
+		return lockHold.getPercentile(99);
+	}
+
+	@Override
+	public long getLockHoldMaxNanos() {
+		return lockHold.getMax();
+	}
+
+	@Override
+	public long getFrames() {
+		return frameTime.getCount();
+	}
+
+	@Override
+	public long getFrameP99Nanos() {
+		return frameTime.getPercentile(99);
+	}
+
+	@Override
+	public long getFrameMaxNanos() {
+		return frameTime.getMax();
+	}
+
+	@Override
+	public double getCellsWrittenPerFrame() {
+		return cellsWritten.getMean();
+	}
+
+	@Override
+	public double getPollsPerSecond() {
+		updateRates();
+		return pollRate;
+	}
+
+	@Override
+	public double getAllocatedBytesPerSecond() {
+		updateRates();
+		return allocationRate;
+	}
+
+	void recordFirstFrame(long millis) {
+		firstFrameMillis = millis;
+	}
+
+	@Override
+	public long getFirstFrameMillis() {
+		return firstFrameMillis;
+	}
+
+	@Override
+	public void reset() {
+		tickTime.reset();
+		jitter.reset();
+		lockWait.reset();
+		lockHold.reset();
+		frameTime.reset();
+		cellsWritten.reset();
+		synchronized (this) {
+			windowTicks = 0;
+		}
+	}
+}
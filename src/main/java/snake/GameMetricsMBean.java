@@ -0,0 +1,52 @@
+package snake;
+
+/**
+ * Management interface of {@link GameMetrics}, times are in nanoseconds and rates per second.
+ */
+public interface GameMetricsMBean {
+
+	long getTicks();
+
+	double getTicksPerSecond();
+
+	double getTickMeanNanos();
+
+	long getTickP50Nanos();
+
+	long getTickP99Nanos();
+
+	long getTickMaxNanos();
+
+	long getJitterP50Nanos();
+
+	long getJitterP99Nanos();
+
+	long getJitterMaxNanos();
+
+	long getLockWaitP99Nanos();
+
+	long getLockWaitMaxNanos();
+
+	long getLockHoldP99Nanos();
+
+	long getLockHoldMaxNanos();
+
+	long getFrames();
+
+	long getFrameP99Nanos();
+
+	long getFrameMaxNanos();
+
+	double getCellsWrittenPerFrame();
+
+	double getPollsPerSecond();
+
+	double getAllocatedBytesPerSecond();
+
+	/**
+	 * Milliseconds from the start of the JVM to the first frame on screen, -1 until then.
+	 */
+	long getFirstFrameMillis();
+
+	void reset();
+}
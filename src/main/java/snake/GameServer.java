@@ -0,0 +1,469 @@
+package snake;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Single threaded, selector based server for remote players. Clients join with a name,
+ * send their input state and receive the authoritative game state: a full frame when
+ * they join and afterwards one delta per published snapshot.
+ * <p>
+ * Clients see a window of the board of the size the server was made with, which follows
+ * the players like the local display does. Full frames carry the window's origin and the
+ * board size, a snapshot whose window moved or changed size is sent as a full frame.
+ * <p>
+ * Every delta is encoded once and shared by all clients. Each client has at most one
+ * pending write, a client still draining the previous one skips the delta and is sent a
+ * full frame once it catches up, so a slow reader never makes the server buffer more.
+ * <p>
+ * Players are seated by the game at the start of a tick, the server finishes the handshake
+ * once the game calls back. A client that drops leaves its player in the game, the seat
+ * goes to the next client joining with the same name.
+ * <p>
+ * Client to server: {@code JOIN, u8 length, utf-8 name} and {@code INPUT, u8 state}
+ * where the state holds the direction code in the low three bits and reset in bit 3.
+ * Server to client: a type byte and an int payload length, followed by the payload.
+ */
+public class GameServer implements Runnable, Closeable {
+
+	static final byte JOIN = 'J';
+	static final byte INPUT = 'I';
+
+	static final byte WELCOME = 'W';
+	static final byte REJECTED = 'X';
+	static final byte FRAME = 'F';
+	static final byte DELTA = 'D';
+
+	static final int RESET_BIT = 1 << 3;
+
+	public static final int DEFAULT_VIEW_COLS = 80;
+	public static final int DEFAULT_VIEW_ROWS = 20;
+
+	private final Game game;
+	private final ControllerRunner controllers;
+	private final Selector selector;
+	private final ServerSocketChannel server;
+	private final int viewCols;
+	private final int viewRows;
+	private final List<Connection> connections = new ArrayList<Connection>();
+	// seats of dropped clients by lower case name, only touched by the server thread
+	private final Map<String, Player> vacantSeats = new HashMap<String, Player>();
+	// joins the game has seated, finished by the server thread
+	private final Queue<Runnable> seated = new ConcurrentLinkedQueue<Runnable>();
+	private volatile boolean stop;
+
+	private GameSnapshot sent;
+	private ByteBuffer fullFrame;
+	private GameSnapshot fullFrameSnapshot;
+
+	public GameServer(Game game, ControllerRunner controllers, InetSocketAddress address) throws IOException {
+		this(game, controllers, address, DEFAULT_VIEW_COLS, DEFAULT_VIEW_ROWS);
+	}
+
+	/**
+	 * Creates a server whose clients see at most cols by rows cells of the board, frames
+	 * encode the window size as shorts.
+	 */
+	public GameServer(Game game, ControllerRunner controllers, InetSocketAddress address, int cols, int rows) throws IOException {
+		if (cols < 1 || rows < 1 || cols > Short.MAX_VALUE || rows > Short.MAX_VALUE) {
+			throw new IllegalArgumentException("View of " + cols + "x" + rows + " cells does not fit a frame");
+		}
+		this.game = game;
+		this.controllers = controllers;
+		this.viewCols = cols;
+		this.viewRows = rows;
+		this.selector = Selector.open();
+		this.server = ServerSocketChannel.open();
+		this.server.bind(address);
+		this.server.configureBlocking(false);
+		this.server.register(selector, SelectionKey.OP_ACCEPT);
+	}
+
+	public int getPort() {
+		return server.socket().getLocalPort();
+	}
+
+	public int getConnectionCount() {
+		return connections.size();
+	}
+
+	public void stop() {
+		stop = true;
+		selector.wakeup();
+	}
+
+	@Override
+	public void run() {
+		game.enableSnapshots(viewCols, viewRows);
+
+		try {
+			while (!stop) {
+				selector.select(Game.TICK_MILLIS);
+
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid()) continue;
+
+					if (key.isAcceptable()) accept();
+					else {
+						Connection connection = (Connection) key.attachment();
+						if (key.isReadable()) read(connection);
+						if (key.isValid() && key.isWritable()) write(connection);
+					}
+				}
+
+				Runnable joined;
+				while ((joined = seated.poll()) != null) {
+					joined.run();
+				}
+
+				broadcast();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		} finally {
+			try {
+				close();
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	private void accept() throws IOException {
+		SocketChannel channel;
+		while ((channel = server.accept()) != null) {
+			channel.configureBlocking(false);
+			channel.socket().setTcpNoDelay(true);
+			Connection connection = new Connection(channel);
+			connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+			connections.add(connection);
+		}
+	}
+
+	private void read(Connection connection) {
+		try {
+			if (connection.channel.read(connection.in) < 0) {
+				drop(connection);
+				return;
+			}
+		} catch (IOException e) {
+			drop(connection);
+			return;
+		}
+
+		ByteBuffer in = connection.in;
+		in.flip();
+		while (in.remaining() >= 2) {
+			in.mark();
+			byte type = in.get();
+			if (type == INPUT) {
+				int state = in.get();
+				if (connection.controller != null) {
+					connection.controller.update(InputRecorder.decode((byte) (state & 0x7)), (state & RESET_BIT) != 0);
+				}
+			} else if (type == JOIN) {
+				int length = in.get() & 0xFF;
+				if (in.remaining() < length) {
+					in.reset();
+					break;
+				}
+				byte[] name = new byte[length];
+				in.get(name);
+				join(connection, new String(name, StandardCharsets.UTF_8));
+			} else {
+				drop(connection);
+				return;
+			}
+		}
+		in.compact();
+	}
+
+	private void join(Connection connection, String name) {
+		if (connection.controller != null || connection.joining) {
+			reject(connection);
+			return;
+		}
+
+		Player seat = vacantSeats.remove(name.toLowerCase(Locale.ROOT));
+		if (seat != null) {
+			joined(connection, seat);
+			return;
+		}
+
+		connection.joining = true;
+		game.join(name, player -> {
+			seated.add(() -> joined(connection, player));
+			selector.wakeup();
+		});
+	}
+
+	private void joined(Connection connection, Player player) {
+		connection.joining = false;
+		if (!connection.channel.isOpen()) {
+			// dropped while the game was seating it
+			if (player != null) vacate(player);
+			return;
+		}
+
+		if (player == null) {
+			reject(connection);
+			return;
+		}
+
+		connection.controller = new NetworkController(player);
+		controllers.addController(connection.controller);
+
+		ByteBuffer welcome = message(WELCOME, 4);
+		welcome.putInt(player.getId());
+		welcome.flip();
+		send(connection, welcome);
+
+		// the board right away, a finished or quiet game may not publish again for a long time,
+		// later deltas are encoded from this same snapshot
+		if (sent != null) send(connection, fullFrame(sent).duplicate());
+		else connection.needsFullFrame = true;
+	}
+
+	/**
+	 * Pushes the latest snapshot, if it is new, to every joined client.
+	 */
+	private void broadcast() {
+		GameSnapshot latest = game.getSnapshot();
+		if (latest == null || latest == sent) return;
+
+		ByteBuffer delta = sent == null ? null : encodeDelta(sent, latest);
+		sent = latest;
+
+		// backwards, a failed write drops the connection from the list
+		for (int i = connections.size() - 1; i >= 0; i--) {
+			Connection connection = connections.get(i);
+			if (connection.controller == null) continue;
+
+			if (connection.pending != null && connection.pending.hasRemaining()) {
+				// still writing an older update, coalesce into a full frame later
+				connection.needsFullFrame = true;
+				continue;
+			}
+
+			if (connection.needsFullFrame || delta == null) {
+				connection.needsFullFrame = false;
+				send(connection, fullFrame(latest).duplicate());
+			} else {
+				send(connection, delta.duplicate());
+			}
+		}
+	}
+
+	private void send(Connection connection, ByteBuffer message) {
+		if (connection.pending != null && connection.pending.hasRemaining()) {
+			// only ever happens for the small handshake replies
+			ByteBuffer joined = ByteBuffer.allocate(connection.pending.remaining() + message.remaining());
+			joined.put(connection.pending).put(message).flip();
+			message = joined;
+		}
+		connection.pending = message;
+		write(connection);
+	}
+
+	private void write(Connection connection) {
+		try {
+			if (connection.pending != null) {
+				connection.channel.write(connection.pending);
+			}
+
+			if (connection.pending != null && connection.pending.hasRemaining()) {
+				connection.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+				return;
+			}
+
+			connection.key.interestOps(SelectionKey.OP_READ);
+			if (connection.needsFullFrame && sent != null && connection.controller != null) {
+				connection.needsFullFrame = false;
+				connection.pending = fullFrame(sent).duplicate();
+				write(connection);
+			}
+		} catch (IOException e) {
+			drop(connection);
+		}
+	}
+
+	private void drop(Connection connection) {
+		connections.remove(connection);
+		if (connection.controller != null) {
+			controllers.removeController(connection.controller);
+			connection.controller.disconnect();
+			vacate(connection.controller.getPlayer());
+			connection.controller = null;
+		}
+		connection.key.cancel();
+		try {
+			connection.channel.close();
+		} catch (IOException e) {
+		}
+	}
+
+	private void reject(Connection connection) {
+		ByteBuffer rejected = message(REJECTED, 0);
+		rejected.flip();
+		send(connection, rejected);
+	}
+
+	private void vacate(Player player) {
+		vacantSeats.put(player.getName().toLowerCase(Locale.ROOT), player);
+	}
+
+	private static ByteBuffer message(byte type, int length) {
+		ByteBuffer buffer = ByteBuffer.allocate(5 + length);
+		buffer.put(type);
+		buffer.putInt(length);
+		return buffer;
+	}
+
+	private ByteBuffer fullFrame(GameSnapshot snapshot) {
+		if (fullFrameSnapshot == snapshot) return fullFrame;
+
+		// the game publishes one window, another viewer may have asked for a larger one first
+		if (snapshot.getWidth() > Short.MAX_VALUE || snapshot.getHeight() > Short.MAX_VALUE) {
+			throw new IllegalStateException("Snapshots of " + snapshot.getWidth() + "x" + snapshot.getHeight() + " cells do not fit a frame");
+		}
+
+		int cells = snapshot.getWidth() * snapshot.getHeight();
+		int length = 8 + 8 + 16 + 4 + cells * 2 + playersLength(snapshot, 0);
+		ByteBuffer buffer = message(FRAME, length);
+		buffer.putLong(snapshot.getVersion());
+		buffer.putLong(snapshot.getTick());
+		buffer.putInt(snapshot.getOriginX());
+		buffer.putInt(snapshot.getOriginY());
+		buffer.putInt(snapshot.getBoardWidth());
+		buffer.putInt(snapshot.getBoardHeight());
+		buffer.putShort((short) snapshot.getWidth());
+		buffer.putShort((short) snapshot.getHeight());
+		for (int i = 0; i < cells; i++) {
+			buffer.putShort((short) snapshot.get(i));
+		}
+		putPlayers(buffer, snapshot, 0);
+		buffer.flip();
+
+		fullFrameSnapshot = snapshot;
+		fullFrame = buffer;
+		return buffer;
+	}
+
+	/**
+	 * Changed cells by their index in the window, or null if the window moved and clients
+	 * need a full frame.
+	 */
+	private static ByteBuffer encodeDelta(GameSnapshot from, GameSnapshot to) {
+		if (from.getOriginX() != to.getOriginX() || from.getOriginY() != to.getOriginY()
+				|| from.getWidth() != to.getWidth() || from.getHeight() != to.getHeight()) {
+			return null;
+		}
+
+		int cells = to.getWidth() * to.getHeight();
+		int changed = 0;
+		for (int i = 0; i < cells; i++) {
+			if (from.get(i) != to.get(i)) changed++;
+		}
+
+		int knownPlayers = from.getPlayerCount();
+		ByteBuffer buffer = message(DELTA, 8 + 8 + 8 + 4 + changed * 6 + playersLength(to, knownPlayers));
+		buffer.putLong(from.getVersion());
+		buffer.putLong(to.getVersion());
+		buffer.putLong(to.getTick());
+		buffer.putInt(changed);
+		for (int i = 0; i < cells; i++) {
+			if (from.get(i) != to.get(i)) {
+				buffer.putInt(i);
+				buffer.putShort((short) to.get(i));
+			}
+		}
+		putPlayers(buffer, to, knownPlayers);
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Scores and alive flags for every player, names only for players the client has not
+	 * been told about yet.
+	 */
+	private static void putPlayers(ByteBuffer buffer, GameSnapshot snapshot, int knownPlayers) {
+		buffer.put((byte) (snapshot.isGameOver() ? 1 : 0));
+		buffer.putShort((short) snapshot.getPlayerCount());
+		for (int i = 0; i < snapshot.getPlayerCount(); i++) {
+			buffer.putInt(snapshot.getScore(i));
+			buffer.put((byte) (snapshot.isAlive(i) ? 1 : 0));
+			if (i >= knownPlayers) {
+				byte[] name = snapshot.getName(i).getBytes(StandardCharsets.UTF_8);
+				int length = Math.min(name.length, 255);
+				buffer.put((byte) length);
+				buffer.put(name, 0, length);
+			}
+		}
+	}
+
+	private static int playersLength(GameSnapshot snapshot, int knownPlayers) {
+		int length = 3 + snapshot.getPlayerCount() * 5;
+		for (int i = knownPlayers; i < snapshot.getPlayerCount(); i++) {
+			length += 1 + Math.min(snapshot.getName(i).getBytes(StandardCharsets.UTF_8).length, 255);
+		}
+		return length;
+	}
+
+	@Override
+	public void close() throws IOException {
+		for (Connection connection : new ArrayList<Connection>(connections)) {
+			drop(connection);
+		}
+		server.close();
+		selector.close();
+	}
+
+	private static class Connection {
+		private final SocketChannel channel;
+		private final ByteBuffer in = ByteBuffer.allocate(512);
+		private SelectionKey key;
+		private ByteBuffer pending;
+		private boolean needsFullFrame;
+		private boolean joining;
+		private NetworkController controller;
+
+		private Connection(SocketChannel channel) {
+			this.channel = channel;
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 7777;
+		boolean tron = args.length > 1 && "--tron".equalsIgnoreCase(args[1]);
+
+		Game game = new Game(20, 80, Thread.currentThread(), tron);
+		ControllerRunner controllers = new ControllerRunner(game, Thread.currentThread());
+		GameServer server = new GameServer(game, controllers, new InetSocketAddress(port));
+
+		System.out.println("Serving " + (tron ? "tron" : "snake") + " game on port " + server.getPort() + ".");
+
+		new Thread(controllers).start();
+		new Thread(server).start();
+
+		game.start();
+		server.stop();
+	}
+}
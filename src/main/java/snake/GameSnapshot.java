@@ -0,0 +1,121 @@
+package snake;
+
+/**
+ * Immutable copy of everything a display needs, published by the game at the end of a
+ * tick. Cells use the {@link Board} codes plus {@link #FOOD}. On boards larger than the
+ * view the cells only cover a window of the board, starting at the origin.
+ */
+public final class GameSnapshot {
+
+	public static final int FOOD = -2;
+
+	private final long version;
+	private final long tick;
+	private final int originX;
+	private final int originY;
+	private final int width;
+	private final int height;
+	private final int boardWidth;
+	private final int boardHeight;
+	private final int[] cells;
+	private final String[] names;
+	private final Color[] colors;
+	private final int[] scores;
+	private final boolean[] alive;
+	private final boolean gameOver;
+
+	GameSnapshot(long version, long tick, int originX, int originY, int width, int height, 
+				 int boardWidth, int boardHeight, int[] cells, 
+				 String[] names, Color[] colors, int[] scores, boolean[] alive, boolean gameOver) {
+		this.version = version;
+		this.tick = tick;
+		this.originX = originX;
+		this.originY = originY;
+		this.width = width;
+		this.height = height;
+		this.boardWidth = boardWidth;
+		this.boardHeight = boardHeight;
+		this.cells = cells;
+		this.names = names;
+		this.colors = colors;
+		this.scores = scores;
+		this.alive = alive;
+		this.gameOver = gameOver;
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	public long getTick() {
+		return tick;
+	}
+
+	/**
+	 * Board column of the first cell in this snapshot.
+	 */
+	public int getOriginX() {
+		return originX;
+	}
+
+	public int getOriginY() {
+		return originY;
+	}
+
+	/**
+	 * Width of the window the cells cover, the whole board unless it is larger than the view.
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public int getBoardWidth() {
+		return boardWidth;
+	}
+
+	public int getBoardHeight() {
+		return boardHeight;
+	}
+
+	public int get(int cell) {
+		return cells[cell];
+	}
+
+	/**
+	 * Cell at the given position within the window.
+	 */
+	public int get(int x, int y) {
+		return cells[y * width + x];
+	}
+
+	public int getPlayerCount() {
+		return names.length;
+	}
+
+	/**
+	 * Player data is indexed by id - 1, the same ids used in the cells.
+	 */
+	public String getName(int player) {
+		return names[player];
+	}
+
+	public Color getColor(int player) {
+		return colors[player];
+	}
+
+	public int getScore(int player) {
+		return scores[player];
+	}
+
+	public boolean isAlive(int player) {
+		return alive[player];
+	}
+
+	public boolean isGameOver() {
+		return gameOver;
+	}
+}
@@ -0,0 +1,51 @@
+package snake;
+
+/**
+ * Bot that heads straight for the closest food it can see, within a square around its
+ * head, and only checks the very next cell for danger.
+ */
+public class GreedyController extends BotController {
+
+	private static final int SIGHT = 24;
+
+	public GreedyController(Player player, Game game) {
+		super(player, game);
+	}
+
+	@Override
+	protected int decide(int head, int current) {
+		int x = board.x(head);
+		int y = board.y(head);
+		int target = -1;
+		int distance = Integer.MAX_VALUE;
+
+		int minY = Math.max(1, y - SIGHT);
+		int maxY = Math.min(board.getHeight() - 2, y + SIGHT);
+		int minX = Math.max(1, x - SIGHT);
+		int maxX = Math.min(board.getWidth() - 2, x + SIGHT);
+		for (int row = minY; row <= maxY; row++) {
+			int end = board.cell(maxX, row) + 1;
+			for (int food = board.nextFood(board.cell(minX, row), end); food >= 0; food = board.nextFood(food + 1, end)) {
+				int d = Math.abs(board.x(food) - x) + Math.abs(row - y);
+				if (d < distance) {
+					distance = d;
+					target = food;
+				}
+			}
+		}
+
+		int best = -1;
+		int bestDistance = Integer.MAX_VALUE;
+		for (int i = 0; i < DIRECTIONS.length; i++) {
+			int d = current < 0 ? i : (current + i) % DIRECTIONS.length;
+			int next = head + offsets[d];
+			if (!isFree(next)) continue;
+			int left = target < 0 ? 0 : Math.abs(board.x(target) - board.x(next)) + Math.abs(board.y(target) - board.y(next));
+			if (left < bestDistance) {
+				best = d;
+				bestDistance = left;
+			}
+		}
+		return best;
+	}
+}
@@ -0,0 +1,42 @@
+package snake;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * One input followed from the controller to the screen by the {@link LatencyTracer}.
+ */
+@Name("snake.InputLatency")
+@Label("Input Latency")
+@Category("Snake")
+@Description("Time from polling a direction change to the frame that shows the move")
+@StackTrace(false)
+class InputLatencyEvent extends Event {
+
+	@Label("Player")
+	int player;
+
+	@Label("Tick")
+	long tick;
+
+	@Label("Poll to Latch")
+	@Timespan(Timespan.NANOSECONDS)
+	long pollToLatch;
+
+	@Label("Latch to Move")
+	@Timespan(Timespan.NANOSECONDS)
+	long latchToApply;
+
+	@Label("Move to Flush")
+	@Timespan(Timespan.NANOSECONDS)
+	long applyToFlush;
+
+	@Label("Total")
+	@Timespan(Timespan.NANOSECONDS)
+	long total;
+}
@@ -0,0 +1,129 @@
+package snake;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes a compact binary log of everything a game consumed as input, enough to replay
+ * the game exactly with {@link InputReplay}.
+ * <p>
+ * Layout: the magic {@code SNKL}, a format version byte, the seed (long), rows and cols
+ * (ints) and a tron flag byte, followed by events. Each event is the tick it applies to
+ * as a varint delta from the previous event, a type byte and, for player events, the
+ * player id as a varint. Join events carry the name as a length prefixed utf-8 string.
+ */
+public class InputRecorder implements Closeable {
+
+	static final int MAGIC = 0x534E4B4C; // SNKL
+	static final byte VERSION = 3;
+
+	static final byte RELEASE = 0;
+	static final byte UP = 1;
+	static final byte DOWN = 2;
+	static final byte LEFT = 3;
+	static final byte RIGHT = 4;
+	static final byte RESET = 5;
+	static final byte JOIN = 6;
+	static final byte END = 7;
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+	private long lastTick;
+
+	public InputRecorder(Path file) throws IOException {
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, 
+										StandardOpenOption.TRUNCATE_EXISTING);
+	}
+
+	void header(long seed, int rows, int cols, boolean tron) {
+		ensure(32);
+		buffer.putInt(MAGIC);
+		buffer.put(VERSION);
+		buffer.putLong(seed);
+		buffer.putInt(rows);
+		buffer.putInt(cols);
+		buffer.put((byte) (tron ? 1 : 0));
+	}
+
+	void join(long tick, int player, String name) {
+		byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+		event(tick, JOIN, player, 5 + bytes.length);
+		putVarint(bytes.length);
+		buffer.put(bytes);
+	}
+
+	void direction(long tick, int player, IntVector2 direction) {
+		event(tick, encode(direction), player, 0);
+	}
+
+	void reset(long tick) {
+		event(tick, RESET, -1, 0);
+	}
+
+	void end(long tick) {
+		event(tick, END, -1, 0);
+		flush();
+	}
+
+	private void event(long tick, byte type, int player, int extra) {
+		ensure(25 + extra);
+		putVarint(tick - lastTick);
+		lastTick = tick;
+		buffer.put(type);
+		if (player >= 0) putVarint(player);
+	}
+
+	private void putVarint(long value) {
+		while ((value & ~0x7FL) != 0) {
+			buffer.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte) value);
+	}
+
+	private void ensure(int bytes) {
+		if (buffer.remaining() < bytes) flush();
+		if (buffer.remaining() < bytes) throw new IllegalArgumentException("Event too large: " + bytes);
+	}
+
+	public void flush() {
+		try {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		flush();
+		channel.close();
+	}
+
+	static byte encode(IntVector2 direction) {
+		if (direction == null) return RELEASE;
+		if (direction.equals(Controller.UP)) return UP;
+		if (direction.equals(Controller.DOWN)) return DOWN;
+		if (direction.equals(Controller.LEFT)) return LEFT;
+		return RIGHT;
+	}
+
+	static IntVector2 decode(byte type) {
+		switch (type) {
+			case UP: return Controller.UP;
+			case DOWN: return Controller.DOWN;
+			case LEFT: return Controller.LEFT;
+			case RIGHT: return Controller.RIGHT;
+			default: return null;
+		}
+	}
+}
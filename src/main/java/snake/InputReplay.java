@@ -0,0 +1,119 @@
+package snake;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Plays an input log written by {@link InputRecorder} back into a fresh game on a
+ * virtual clock, as fast as the cpu allows. The seed and the inputs fully determine the
+ * game, so the replay ends with the same scores and passes through the same frames.
+ */
+public class InputReplay {
+
+	private final ByteBuffer log;
+	private final long seed;
+	private final int rows;
+	private final int cols;
+	private final boolean tron;
+
+	public InputReplay(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			this.log = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+
+		if (log.getInt() != InputRecorder.MAGIC) throw new IOException("Not an input log: " + file);
+		byte version = log.get();
+		if (version != InputRecorder.VERSION) throw new IOException("Unsupported input log version " + version);
+
+		this.seed = log.getLong();
+		this.rows = log.getInt();
+		this.cols = log.getInt();
+		this.tron = log.get() != 0;
+	}
+
+	/**
+	 * Replays the whole log and returns the game in its final state. If frames is not
+	 * null it receives every snapshot the game publishes along the way.
+	 */
+	public Game replay(Consumer<GameSnapshot> frames) {
+		ByteBuffer events = log.duplicate();
+		Game game = new Game(rows, cols, null, tron, new VirtualClock(), seed);
+		if (frames != null) game.enableSnapshots();
+
+		long eventTick = 0;
+		long lastFrame = 0;
+
+		while (events.hasRemaining()) {
+			eventTick += getVarint(events);
+			byte type = events.get();
+
+			// run the game up to the tick this event belongs to
+			while (game.getTick() + 1 < eventTick) {
+				game.tick();
+				lastFrame = publish(game, frames, lastFrame);
+			}
+
+			if (type == InputRecorder.END) break;
+
+			switch (type) {
+				case InputRecorder.JOIN:
+					getVarint(events);
+					byte[] name = new byte[(int) getVarint(events)];
+					events.get(name);
+					game.addPlayer(new String(name, StandardCharsets.UTF_8));
+					break;
+				case InputRecorder.RESET:
+					game.reset(true);
+					break;
+				default:
+					int player = (int) getVarint(events);
+					game.getPlayers().get(player - 1).setMovementDirection(InputRecorder.decode(type));
+			}
+		}
+
+		return game;
+	}
+
+	private static long publish(Game game, Consumer<GameSnapshot> frames, long lastFrame) {
+		if (frames == null) return lastFrame;
+		GameSnapshot snapshot = game.getSnapshot();
+		if (snapshot.getVersion() == lastFrame) return lastFrame;
+		frames.accept(snapshot);
+		return snapshot.getVersion();
+	}
+
+	private static long getVarint(ByteBuffer buffer) {
+		long value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = buffer.get();
+			value |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return value;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public static void main(String[] args) throws IOException {
+		InputReplay replay = new InputReplay(Paths.get(args[0]));
+
+		long start = System.nanoTime();
+		Game game = replay.replay(null);
+		double millis = (System.nanoTime() - start) / 1e6;
+
+		System.out.println("Replayed " + game.getTick() + " ticks in " + String.format("%.1f", millis) + "ms.");
+		for (Player player : game.getPlayers()) {
+			System.out.println(player.getScoreDescription());
+		}
+	}
+}
@@ -21,6 +21,13 @@ public class IntVector2 {
 		return this.x == 0 && this.y == 0;
 	}
 
+	/**
+	 * Same as {@code add(other).hasMagnitudeZero()} without the intermediate vector.
+	 */
+	public boolean isOpposite(IntVector2 other) {
+		return this.x + other.x == 0 && this.y + other.y == 0;
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -0,0 +1,89 @@
+package snake;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.charset.Charset;
+
+import com.googlecode.lanterna.SGR;
+import com.googlecode.lanterna.TerminalSize;
+import com.googlecode.lanterna.TextColor;
+import com.googlecode.lanterna.terminal.DefaultTerminalFactory;
+import com.googlecode.lanterna.terminal.Terminal;
+import com.googlecode.lanterna.terminal.swing.AWTTerminalFontConfiguration;
+
+/**
+ * Draws into Lanterna's Swing terminal window, needs a display.
+ */
+public class LanternaRenderer implements Renderer {
+
+	private Terminal terminal;
+
+	public LanternaRenderer() {
+	}
+
+	/**
+	 * Draws into an existing terminal instead of opening a window, such as a virtual one.
+	 */
+	public LanternaRenderer(Terminal terminal) {
+		this.terminal = terminal;
+	}
+
+	@Override
+	public void open(int cols, int rows) throws IOException {
+		if (terminal == null) {
+			terminal = createWindow(cols, rows);
+		}
+		terminal.enterPrivateMode();
+		terminal.setCursorVisible(false);
+		terminal.enableSGR(SGR.BOLD);
+		terminal.setBackgroundColor(TextColor.ANSI.BLACK);
+		terminal.clearScreen();
+	}
+
+	private static Terminal createWindow(int cols, int rows) throws IOException {
+		DefaultTerminalFactory factory = new DefaultTerminalFactory(System.out, System.in, Charset.forName("UTF8"));
+		
+		factory.setTerminalEmulatorTitle("Snake");
+		factory.setInitialTerminalSize(new TerminalSize(cols, rows));
+		factory.setTerminalEmulatorFontConfiguration(
+			AWTTerminalFontConfiguration.getDefault());
+
+		try {
+			// using reflection to get at font size variable
+			Field field = AWTTerminalFontConfiguration.class.getDeclaredField("CHOSEN_FONT_SIZE");
+			field.setAccessible(true);
+			field.set(null, Integer.valueOf(56)); // magic number, the value of the font size that seems to work well
+		} catch (ReflectiveOperationException e) {
+			throw new RuntimeException(e);
+		}
+
+		return factory.createTerminalEmulator();
+	}
+
+	@Override
+	public void setColor(TextColor.ANSI color) throws IOException {
+		terminal.setForegroundColor(color);
+	}
+
+	@Override
+	public void moveTo(int x, int y) throws IOException {
+		terminal.setCursorPosition(x, y);
+	}
+
+	@Override
+	public void put(char c) throws IOException {
+		terminal.putCharacter(c);
+	}
+
+	@Override
+	public void flush() throws IOException {
+		terminal.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (terminal != null) {
+			terminal.exitPrivateMode();
+		}
+	}
+}
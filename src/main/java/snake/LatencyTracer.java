@@ -0,0 +1,175 @@
+package snake;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Follows direction changes from the controller to the screen. An input is stamped when
+ * it is polled, when a tick latches it from the mailbox, when the player next moves and
+ * when the first frame showing that move is flushed. Finished traces are kept in a
+ * preallocated ring, summed up in histograms and, where the JVM has Flight Recorder,
+ * committed as {@link InputLatencyEvent}s.
+ * <p>
+ * Polls come from the input thread, latching and moving from the game thread and flushes
+ * from the display thread. A trace is written to the ring by the game thread and only
+ * completed by the display thread once {@link #applied} has moved past it.
+ */
+public class LatencyTracer {
+
+	private static final int CAPACITY = 4096;
+	private static final boolean JFR = flightRecorderPresent();
+
+	// per player, the poll stamp is published through the player's mailbox
+	private final AtomicLongArray polled = new AtomicLongArray(Game.MAX_PLAYERS);
+	private final long[] pendingPoll = new long[Game.MAX_PLAYERS];
+	private final long[] pendingLatch = new long[Game.MAX_PLAYERS];
+
+	private final int[] player = new int[CAPACITY];
+	private final long[] pollNanos = new long[CAPACITY];
+	private final long[] latchNanos = new long[CAPACITY];
+	private final long[] applyNanos = new long[CAPACITY];
+	private final long[] applyTick = new long[CAPACITY];
+	private final long[] flushNanos = new long[CAPACITY];
+
+	private volatile long applied;
+	private volatile long flushed;
+	private volatile long dropped;
+
+	private final LogHistogram pollToLatch = new LogHistogram();
+	private final LogHistogram latchToApply = new LogHistogram();
+	private final LogHistogram applyToFlush = new LogHistogram();
+	private final LogHistogram total = new LogHistogram();
+
+	private static boolean flightRecorderPresent() {
+		try {
+			Class.forName("jdk.jfr.Event");
+			return true;
+		} catch (ClassNotFoundException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Input thread, right before the direction is posted to the player's mailbox.
+	 */
+	void polled(int playerIndex) {
+		polled.set(playerIndex, System.nanoTime());
+	}
+
+	/**
+	 * Game thread, a tick took a new direction from the mailbox.
+	 */
+	void latched(int playerIndex) {
+		long poll = polled.get(playerIndex);
+		if (poll == 0) return;
+		pendingPoll[playerIndex] = poll;
+		pendingLatch[playerIndex] = System.nanoTime();
+	}
+
+	/**
+	 * Game thread, after the moves of a tick. Every player with a latched input that moved
+	 * this tick finishes its trace up to the frame.
+	 */
+	void moved(PlayerTable table, long time, long tick) {
+		long now = System.nanoTime();
+		for (int i = 0; i < table.size; i++) {
+			if (pendingLatch[i] == 0 || table.lastUpdateTime[i] != time) continue;
+
+			long sequence = applied;
+			if (sequence - flushed >= CAPACITY) {
+				// nobody is drawing frames, keep the traces that are waiting
+				dropped++;
+			} else {
+				int slot = (int) (sequence & (CAPACITY - 1));
+				player[slot] = i + 1;
+				pollNanos[slot] = pendingPoll[i];
+				latchNanos[slot] = pendingLatch[i];
+				applyNanos[slot] = now;
+				applyTick[slot] = tick;
+				applied = sequence + 1;
+			}
+			pendingLatch[i] = 0;
+		}
+	}
+
+	/**
+	 * Display thread, a frame drawn from the snapshot of the given tick was flushed.
+	 */
+	void flushed(long tick) {
+		long now = System.nanoTime();
+		long end = applied;
+		long sequence = flushed;
+		while (sequence < end) {
+			int slot = (int) (sequence & (CAPACITY - 1));
+			if (applyTick[slot] > tick) break;
+
+			flushNanos[slot] = now;
+			pollToLatch.record(latchNanos[slot] - pollNanos[slot]);
+			latchToApply.record(applyNanos[slot] - latchNanos[slot]);
+			applyToFlush.record(now - applyNanos[slot]);
+			total.record(now - pollNanos[slot]);
+			if (JFR) commitEvent(slot);
+			sequence++;
+		}
+		flushed = sequence;
+	}
+
+	private void commitEvent(int slot) {
+		InputLatencyEvent event = new InputLatencyEvent();
+		if (!event.isEnabled()) return;
+		event.player = player[slot];
+		event.tick = applyTick[slot];
+		event.pollToLatch = latchNanos[slot] - pollNanos[slot];
+		event.latchToApply = applyNanos[slot] - latchNanos[slot];
+		event.applyToFlush = flushNanos[slot] - applyNanos[slot];
+		event.total = flushNanos[slot] - pollNanos[slot];
+		event.commit();
+	}
+
+	public long getTraces() {
+		return total.getCount();
+	}
+
+	public long getDropped() {
+		return dropped;
+	}
+
+	/**
+	 * The most recent finished traces, oldest first, as rows of player, poll to latch,
+	 * latch to move, move to flush and total nanoseconds.
+	 */
+	public long[][] recent(int count) {
+		long end = flushed;
+		int n = (int) Math.min(count, Math.min(end, CAPACITY));
+		long[][] rows = new long[n][];
+		for (int i = 0; i < n; i++) {
+			int slot = (int) ((end - n + i) & (CAPACITY - 1));
+			rows[i] = new long[] {player[slot], latchNanos[slot] - pollNanos[slot], applyNanos[slot] - latchNanos[slot], 
+								  flushNanos[slot] - applyNanos[slot], flushNanos[slot] - pollNanos[slot]};
+		}
+		return rows;
+	}
+
+	private static String line(String name, LogHistogram histogram) {
+		return String.format("%-13s p50 %6.1fms p90 %6.1fms p99 %6.1fms max %6.1fms", name, 
+							 millis(histogram.getPercentile(50)), millis(histogram.getPercentile(90)), 
+							 millis(histogram.getPercentile(99)), millis(histogram.getMax()));
+	}
+
+	private static double millis(long nanos) {
+		return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+	}
+
+	/**
+	 * Percentiles of every stage, one line each.
+	 */
+	public String[] describe() {
+		return new String[] {
+			String.format("%d inputs traced, %d dropped", getTraces(), dropped),
+			line("poll-latch", pollToLatch),
+			line("latch-move", latchToApply),
+			line("move-flush", applyToFlush),
+			line("input-screen", total)
+		};
+	}
+}
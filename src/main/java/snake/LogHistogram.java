@@ -0,0 +1,83 @@
+package snake;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free histogram of non negative values with log linear buckets, eight per power of
+ * two, so every recorded value is known to within about 12% in a fixed 4KB of counters.
+ */
+final class LogHistogram {
+
+	private static final int SUB_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(64 << SUB_BITS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	private static int bucket(long value) {
+		if (value < SUB_BUCKETS) return (int) value;
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int mantissa = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BITS + 1) << SUB_BITS | mantissa;
+	}
+
+	private static long lowerBound(int bucket) {
+		if (bucket < SUB_BUCKETS) return bucket;
+		int exponent = (bucket >>> SUB_BITS) + SUB_BITS - 1;
+		int mantissa = bucket & (SUB_BUCKETS - 1);
+		return (long) (SUB_BUCKETS | mantissa) << (exponent - SUB_BITS);
+	}
+
+	void record(long value) {
+		if (value < 0) value = 0;
+		counts.incrementAndGet(bucket(value));
+		count.increment();
+		sum.add(value);
+		max.accumulate(value);
+	}
+
+	long getCount() {
+		return count.sum();
+	}
+
+	double getMean() {
+		long n = count.sum();
+		return n == 0 ? 0 : (double) sum.sum() / n;
+	}
+
+	long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Lower bound of the bucket holding the given percentile, 0 when nothing was recorded.
+	 */
+	long getPercentile(double percentile) {
+		long total = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			total += counts.get(i);
+		}
+		if (total == 0) return 0;
+
+		long rank = (long) Math.ceil(total * percentile / 100.0);
+		long seen = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			seen += counts.get(i);
+			if (seen >= rank && counts.get(i) > 0) return lowerBound(i);
+		}
+		return max.get();
+	}
+
+	void reset() {
+		for (int i = 0; i < counts.length(); i++) {
+			counts.set(i, 0);
+		}
+		count.reset();
+		sum.reset();
+		max.reset();
+	}
+}
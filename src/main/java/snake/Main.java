@@ -3,12 +3,28 @@ package snake;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import com.studiohartman.jamepad.ControllerManager;
 import com.studiohartman.jamepad.ControllerState;
 
 public class Main {
 	
+	private static final int VIEW_ROWS = 20;
+	private static final int VIEW_COLS = 80;
+	
+	private static final Executor STARTUP = task -> {
+		Thread thread = new Thread(task, "startup");
+		thread.setDaemon(true);
+		thread.start();
+	};
+	
 	private static String prompt(String str, BufferedReader reader) {
 		System.out.print(str);
 		try {
@@ -18,6 +34,34 @@ public class Main {
 		}
 	}
 	
+	private static String option(String[] args, String name) {
+		for (int i = 0; i < args.length - 1; i++) {
+			if (name.equalsIgnoreCase(args[i])) return args[i + 1];
+		}
+		return null;
+	}
+	
+	/**
+	 * Reads an integer setting, the command line wins over the config file.
+	 */
+	private static int setting(String[] args, Properties config, String name, int defaultValue) {
+		String value = option(args, "--" + name);
+		if (value == null) value = config.getProperty(name);
+		return value == null ? defaultValue : Integer.parseInt(value.trim());
+	}
+	
+	private static Properties config(String[] args) {
+		Properties config = new Properties();
+		String file = option(args, "--config");
+		if (file == null) return config;
+		try (Reader reader = Files.newBufferedReader(Paths.get(file))) {
+			config.load(reader);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		return config;
+	}
+	
 	public static void main(String[] args) {
 		boolean skipNames = args.length > 0 && "--skip-names".equalsIgnoreCase(args[0]);
 		boolean tron = args.length > 1 && "--tron".equalsIgnoreCase(args[1]);
@@ -28,20 +72,76 @@ public class Main {
 
 		System.out.println("Starting " + (tron ? "tron" : "snake") + " game.");
 
-		ControllerManager controllerManager = new ControllerManager();
+		CompletableFuture<ControllerManager> sdl = null;
+		InputRecorder recorder = null;
+		TerminalGameDisplayer displayer = null;
+		boolean drawing = false;
+		ScoreStore scores = null;
 		
 		try {
-			controllerManager.initSDLGamepad();
+			// native SDL loading, game setup and opening the screen run side by side
+			sdl = CompletableFuture.supplyAsync(() -> {
+				ControllerManager manager = new ControllerManager();
+				manager.initSDLGamepad();
+				return manager;
+			}, STARTUP);
 		
-			int rows = 20;
-			int cols = 80;
+			Properties config = config(args);
+			int rows = setting(args, config, "rows", VIEW_ROWS);
+			int cols = setting(args, config, "cols", VIEW_COLS);
+			int viewRows = setting(args, config, "view-rows", VIEW_ROWS);
+			int viewCols = setting(args, config, "view-cols", VIEW_COLS);
+			
+			Thread mainThread = Thread.currentThread();
+			CompletableFuture<Game> setup = CompletableFuture.supplyAsync(() -> new Game(rows, cols, mainThread, tron), STARTUP);
+			String render = option(args, "--render");
+			Renderer renderer = Renderer.create(render != null ? render : "lanterna");
+			
+			Game game = setup.join();
+			displayer = new TerminalGameDisplayer(game, mainThread, viewCols, viewRows, renderer);
+			ControllerRunner controllers = new ControllerRunner(game, mainThread);
+			
+			// escape codes would end up between the name prompts, otherwise the screen can open now
+			if (skipNames || !(renderer instanceof AnsiRenderer)) {
+				displayer.openEarly(STARTUP);
+			}
 			
-			Game game = new Game(rows, cols, Thread.currentThread(), tron);
-			TerminalGameDisplayer displayer = new TerminalGameDisplayer(game, Thread.currentThread());
-			ControllerRunner controllers = new ControllerRunner(game, Thread.currentThread());
+			boolean stats = Arrays.asList(args).contains("--stats");
+			if (stats || Arrays.asList(args).contains("--metrics")) {
+				game.enableMetrics().register("main");
+				displayer.showStats(stats);
+			}
+			
+			LatencyTracer tracer = Arrays.asList(args).contains("--trace-latency") ? game.enableLatencyTracing() : null;
+			
+			String quitAfter = option(args, "--quit-after");
+			if (quitAfter != null) {
+				long millis = Long.parseLong(quitAfter);
+				STARTUP.execute(() -> {
+					try {
+						Thread.sleep(millis);
+					} catch (InterruptedException e) {
+					}
+					game.quit(true);
+				});
+			}
+			
+			String recordFile = option(args, "--record");
+			if (recordFile != null) {
+				recorder = new InputRecorder(Paths.get(recordFile));
+				game.record(recorder);
+				System.out.println("Recording inputs to " + recordFile + ".");
+			}
+			
+			String scoresDirectory = option(args, "--scores");
+			if (scoresDirectory != null) {
+				scores = new ScoreStore(Paths.get(scoresDirectory));
+				game.setScoreStore(scores);
+			}
 			
 			BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
 			
+			ControllerManager controllerManager = sdl.join();
 			int numControllers = controllerManager.getNumControllers();
 			
 			System.out.println(numControllers + " controllers detected.");
@@ -63,6 +163,7 @@ public class Main {
 			}
 			
 			new Thread(displayer).start();
+			drawing = true;
 			
 			Thread controllerThread = new Thread(controllers);
 			controllerThread.start();
@@ -79,8 +180,37 @@ public class Main {
 				}
 			}
 			
+			System.out.println("First frame drawn " + displayer.getFirstFrameMillis() + "ms after start.");
+			if (tracer != null) {
+				for (String line : tracer.describe()) {
+					System.out.println(line);
+				}
+			}
+			
+		} catch (IOException e) {
+			throw new RuntimeException(e);
 		} finally {
-			controllerManager.quitSDLGamepad();
+			if (displayer != null && !drawing) {
+				displayer.discard();
+			}
+			if (recorder != null) {
+				try {
+					recorder.close();
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+			if (scores != null) {
+				try {
+					scores.close();
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+			// a failed or unfinished SDL start has nothing to shut down, joining it would hide the first error
+			if (sdl != null && sdl.isDone() && !sdl.isCompletedExceptionally()) {
+				sdl.join().quitSDLGamepad();
+			}
 		}
 	}
 	
@@ -89,6 +219,7 @@ public class Main {
 		private ControllerManager manager;
 		private int index;
 		private Player player;
+		private ControllerState state;
 
 		public JpadController(Player player, int controllerIndex, ControllerManager manager) {
 			this.player = player;
@@ -101,10 +232,13 @@ public class Main {
 			return player;
 		}
 
+		@Override
+		public void poll() {
+			state = manager.getState(index);
+		}
+
 		@Override
 		public IntVector2 getDirection() {
-			ControllerState state = manager.getState(index);
-			
 			if (state.dpadDown) return Controller.DOWN;
 			if (state.dpadRight) return Controller.RIGHT;
 			if (state.dpadLeft) return Controller.LEFT;
@@ -115,13 +249,12 @@ public class Main {
 
 		@Override
 		public boolean getGameReset() {
-			ControllerState state = manager.getState(index);
 			return state.b;
 		}
 
 		@Override
 		public boolean getGameQuit() {
-			return manager.getState(index).y;
+			return state.y;
 		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,77 @@
+package snake;
+
+import java.util.Arrays;
+
+/**
+ * Outcome of one finished game.
+ */
+public class MatchResult {
+
+	private final long seed;
+	private final boolean tron;
+	private final String[] names;
+	private final int[] scores;
+	private final long[] ticksSurvived;
+	private final long ticks;
+
+	public MatchResult(long seed, boolean tron, String[] names, int[] scores, long[] ticksSurvived, long ticks) {
+		this.seed = seed;
+		this.tron = tron;
+		this.names = names;
+		this.scores = scores;
+		this.ticksSurvived = ticksSurvived;
+		this.ticks = ticks;
+	}
+
+	/**
+	 * Index of the player with the highest score, or -1 when the top score is shared.
+	 */
+	public int getWinner() {
+		int winner = -1;
+		int best = Integer.MIN_VALUE;
+		for (int i = 0; i < scores.length; i++) {
+			if (scores[i] > best) {
+				best = scores[i];
+				winner = i;
+			} else if (scores[i] == best) {
+				winner = -1;
+			}
+		}
+		return winner;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public boolean isTron() {
+		return tron;
+	}
+
+	public int getPlayerCount() {
+		return names.length;
+	}
+
+	public String getName(int player) {
+		return names[player];
+	}
+
+	public int getScore(int player) {
+		return scores[player];
+	}
+
+	public long getTicksSurvived(int player) {
+		return ticksSurvived[player];
+	}
+
+	public long getTicks() {
+		return ticks;
+	}
+
+	@Override
+	public String toString() {
+		return "MatchResult [seed=" + seed + ", tron=" + tron + ", names=" + Arrays.toString(names) + 
+			   ", scores=" + Arrays.toString(scores) + ", ticksSurvived=" + Arrays.toString(ticksSurvived) + 
+			   ", ticks=" + ticks + "]";
+	}
+}
@@ -0,0 +1,85 @@
+package snake;
+
+import java.util.Arrays;
+import java.util.stream.Collector;
+
+/**
+ * Running totals over a stream of {@link MatchResult}s, mergeable so it can be used as
+ * the reduction of a parallel stream.
+ */
+public class MatchSummary {
+
+	private long games;
+	private long ties;
+	private long ticks;
+	private long[] wins = new long[0];
+	private long[] scores = new long[0];
+	private long[] ticksSurvived = new long[0];
+
+	public static Collector<MatchResult, MatchSummary, MatchSummary> collector() {
+		return Collector.of(MatchSummary::new, MatchSummary::add, MatchSummary::combine);
+	}
+
+	public void add(MatchResult result) {
+		ensureSeats(result.getPlayerCount());
+		games++;
+		ticks += result.getTicks();
+
+		int winner = result.getWinner();
+		if (winner < 0) ties++;
+		else wins[winner]++;
+
+		for (int i = 0; i < result.getPlayerCount(); i++) {
+			scores[i] += result.getScore(i);
+			ticksSurvived[i] += result.getTicksSurvived(i);
+		}
+	}
+
+	public MatchSummary combine(MatchSummary other) {
+		ensureSeats(other.wins.length);
+		games += other.games;
+		ties += other.ties;
+		ticks += other.ticks;
+		for (int i = 0; i < other.wins.length; i++) {
+			wins[i] += other.wins[i];
+			scores[i] += other.scores[i];
+			ticksSurvived[i] += other.ticksSurvived[i];
+		}
+		return this;
+	}
+
+	private void ensureSeats(int seats) {
+		if (wins.length >= seats) return;
+		wins = Arrays.copyOf(wins, seats);
+		scores = Arrays.copyOf(scores, seats);
+		ticksSurvived = Arrays.copyOf(ticksSurvived, seats);
+	}
+
+	public long getGames() {
+		return games;
+	}
+
+	public long getTies() {
+		return ties;
+	}
+
+	public long getTicks() {
+		return ticks;
+	}
+
+	public int getSeats() {
+		return wins.length;
+	}
+
+	public long getWins(int seat) {
+		return wins[seat];
+	}
+
+	public double getAverageScore(int seat) {
+		return games == 0 ? 0 : (double) scores[seat] / games;
+	}
+
+	public double getAverageTicksSurvived(int seat) {
+		return games == 0 ? 0 : (double) ticksSurvived[seat] / games;
+	}
+}
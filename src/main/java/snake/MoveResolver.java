@@ -0,0 +1,221 @@
+package snake;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Moves every player for one tick so that the outcome never depends on the order of the
+ * player list. First each player picks its next head against the board as it stood at the
+ * start of the tick. Then all moves are decided together: a head that runs into a wall or
+ * any snake cell, tails included, dies, and heads that meet on the same empty cell all die.
+ * Scores are settled last, kills against the scores from before the tick and survivor
+ * points only once every death of the tick is known.
+ *
+ * With enough players the work is split over the common fork join pool. Deciding is done
+ * per horizontal band of the board, every contested cell lies in exactly one band, so no
+ * two workers ever look at the same claim. Claims are found by sorting a band's moves by
+ * target cell, which keeps the scratch space proportional to the players, not the board.
+ */
+final class MoveResolver {
+
+	static final int PARALLEL_THRESHOLD = 64;
+	private static final int CHUNK = 32;
+
+	static final int NO_MOVE = -1;
+
+	// outcomes, a positive outcome is the id of the snake that was hit
+	private static final int MOVED = Board.EMPTY;
+	private static final int HEAD_ON = -2;
+
+	private final Board board;
+	private final PlayerTable table;
+	private final List<Player> players;
+	private final int bands;
+	private final int bandRows;
+	private final int[] bandStart;
+	private final int[] bandEnd;
+	private int parallelThreshold = PARALLEL_THRESHOLD;
+	private int[] order = new int[16];
+	private long[] claims = new long[16];
+
+	MoveResolver(Board board, PlayerTable table, List<Player> players) {
+		this.board = board;
+		this.table = table;
+		this.players = players;
+		int height = board.getHeight();
+		int wanted = ForkJoinPool.getCommonPoolParallelism() * 4;
+		this.bandRows = Math.max(1, (height + wanted - 1) / wanted);
+		this.bands = (height + bandRows - 1) / bandRows;
+		this.bandStart = new int[bands + 1];
+		this.bandEnd = new int[bands];
+	}
+
+	/**
+	 * Sets from how many players on the work is split over the pool, the outcome is the
+	 * same either way.
+	 */
+	void setParallelThreshold(int players) {
+		this.parallelThreshold = players;
+	}
+
+	void step() {
+		int count = table.size;
+		boolean parallel = count >= parallelThreshold;
+
+		if (parallel) {
+			IntStream.range(0, chunks(count)).parallel().forEach(this::planChunk);
+		} else {
+			plan(0, count);
+		}
+
+		int movers = partition(count);
+		if (movers == 0) return;
+
+		if (parallel && movers >= parallelThreshold) {
+			IntStream.range(0, bands).parallel().forEach(this::decide);
+			IntStream.range(0, chunks(count)).parallel().forEach(this::applyChunk);
+		} else {
+			for (int band = 0; band < bands; band++) {
+				decide(band);
+			}
+			apply(0, count);
+		}
+
+		settle(count);
+	}
+
+	private static int chunks(int count) {
+		return (count + CHUNK - 1) / CHUNK;
+	}
+
+	private void planChunk(int chunk) {
+		plan(chunk * CHUNK, Math.min(table.size, (chunk + 1) * CHUNK));
+	}
+
+	private void applyChunk(int chunk) {
+		apply(chunk * CHUNK, Math.min(table.size, (chunk + 1) * CHUNK));
+	}
+
+	private void plan(int from, int to) {
+		int[] target = table.target;
+		for (int i = from; i < to; i++) {
+			target[i] = players.get(i).planMove();
+		}
+	}
+
+	/**
+	 * Counting sort of the moving players by the band of their target cell.
+	 */
+	private int partition(int count) {
+		int[] target = table.target;
+		int width = board.getWidth();
+
+		Arrays.fill(bandStart, 0);
+		int movers = 0;
+		for (int i = 0; i < count; i++) {
+			if (target[i] == NO_MOVE) continue;
+			bandStart[target[i] / width / bandRows + 1]++;
+			movers++;
+		}
+		if (movers == 0) return 0;
+
+		for (int band = 0; band < bands; band++) {
+			bandStart[band + 1] += bandStart[band];
+			bandEnd[band] = bandStart[band];
+		}
+		if (order.length < movers) {
+			order = new int[Math.max(movers, order.length * 2)];
+			claims = new long[order.length];
+		}
+		for (int i = 0; i < count; i++) {
+			if (target[i] == NO_MOVE) continue;
+			order[bandEnd[target[i] / width / bandRows]++] = i;
+			// pages are allocated here, single threaded, so workers only write existing pages
+			board.reserve(target[i]);
+		}
+		return movers;
+	}
+
+	private void decide(int band) {
+		int[] target = table.target;
+		int[] outcome = table.outcome;
+		int from = bandStart[band];
+		int to = bandStart[band + 1];
+
+		for (int k = from; k < to; k++) {
+			int i = order[k];
+			claims[k] = (long) target[i] << 32 | i;
+		}
+		Arrays.sort(claims, from, to);
+
+		for (int k = from; k < to; k++) {
+			int i = (int) claims[k];
+			int cell = target[i];
+			int occupant = board.get(cell);
+			boolean contested = (k > from && (int) (claims[k - 1] >>> 32) == cell)
+							 || (k + 1 < to && (int) (claims[k + 1] >>> 32) == cell);
+			if (occupant != Board.EMPTY) {
+				outcome[i] = occupant;
+			} else if (contested) {
+				outcome[i] = HEAD_ON;
+			} else {
+				outcome[i] = MOVED;
+			}
+		}
+	}
+
+	/**
+	 * Heads only move onto cells that were empty and tails only leave cells that were
+	 * occupied, so no two players ever write the same cell here.
+	 */
+	private void apply(int from, int to) {
+		int[] target = table.target;
+		int[] outcome = table.outcome;
+		for (int i = from; i < to; i++) {
+			if (target[i] != NO_MOVE && outcome[i] == MOVED) {
+				players.get(i).commitMove(target[i]);
+			}
+		}
+	}
+
+	private void settle(int count) {
+		int[] target = table.target;
+		int[] outcome = table.outcome;
+		int[] score = table.score;
+		int[] gain = table.gain;
+		int[] rebate = table.rebate;
+		boolean[] dead = table.dead;
+
+		int pool = 0;
+		for (int i = 0; i < count; i++) {
+			if (target[i] == NO_MOVE) continue;
+			int result = outcome[i];
+			if (result == MOVED) continue;
+
+			dead[i] = true;
+			int share = score[i] / 2;
+			pool += share;
+			int killer = result - 1;
+			if (result > 0 && killer != i) {
+				gain[killer] += score[i];
+				rebate[killer] += share;
+			}
+		}
+
+		for (int i = 0; i < count; i++) {
+			if (!dead[i] && target[i] != NO_MOVE) {
+				board.reindex(target[i]);
+				if (table.vacated[i] != Snake.NO_CELL) board.reindex(table.vacated[i]);
+				players.get(i).eat(target[i]);
+			}
+			if (gain[i] != 0 || rebate[i] != 0 || pool != 0) {
+				if (!dead[i]) score[i] += pool - rebate[i];
+				score[i] += gain[i];
+				gain[i] = 0;
+				rebate[i] = 0;
+			}
+		}
+	}
+}
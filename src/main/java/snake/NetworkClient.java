@@ -0,0 +1,213 @@
+package snake;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Minimal blocking client for {@link GameServer}, keeps a local copy of the board that
+ * it patches with every delta. Used for loopback testing and remote bots.
+ */
+public class NetworkClient implements Closeable {
+
+	private final SocketChannel channel;
+	private final ByteBuffer header = ByteBuffer.allocate(5);
+	private final ByteBuffer input = ByteBuffer.allocate(2);
+
+	private int playerId;
+	private long version;
+	private long tick;
+	private int originX;
+	private int originY;
+	private int boardWidth;
+	private int boardHeight;
+	private int width;
+	private int height;
+	private int[] cells = new int[0];
+	private boolean gameOver;
+	private int[] scores = new int[0];
+	private boolean[] alive = new boolean[0];
+	private String[] names = new String[0];
+
+	public NetworkClient(InetSocketAddress address) throws IOException {
+		this.channel = SocketChannel.open(address);
+		this.channel.socket().setTcpNoDelay(true);
+	}
+
+	/**
+	 * Joins the game and returns the player id, or -1 if the server rejected the name.
+	 */
+	public int join(String name) throws IOException {
+		byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer join = ByteBuffer.allocate(2 + bytes.length);
+		join.put(GameServer.JOIN).put((byte) bytes.length).put(bytes).flip();
+		writeFully(join);
+
+		while (true) {
+			byte type = readMessage();
+			if (type == GameServer.WELCOME) return playerId;
+			if (type == GameServer.REJECTED) return -1;
+		}
+	}
+
+	public void sendInput(IntVector2 direction, boolean reset) throws IOException {
+		input.clear();
+		input.put(GameServer.INPUT).put((byte) (InputRecorder.encode(direction) | (reset ? GameServer.RESET_BIT : 0))).flip();
+		writeFully(input);
+	}
+
+	/**
+	 * Blocks until the next message arrives, applies it and returns its type.
+	 */
+	public byte readMessage() throws IOException {
+		header.clear();
+		readFully(header);
+		header.flip();
+		byte type = header.get();
+		ByteBuffer payload = ByteBuffer.allocate(header.getInt());
+		readFully(payload);
+		payload.flip();
+
+		switch (type) {
+			case GameServer.WELCOME:
+				playerId = payload.getInt();
+				break;
+			case GameServer.FRAME:
+				version = payload.getLong();
+				tick = payload.getLong();
+				originX = payload.getInt();
+				originY = payload.getInt();
+				boardWidth = payload.getInt();
+				boardHeight = payload.getInt();
+				width = payload.getShort();
+				height = payload.getShort();
+				cells = new int[width * height];
+				for (int i = 0; i < cells.length; i++) {
+					cells[i] = payload.getShort();
+				}
+				names = new String[0];
+				readPlayers(payload);
+				break;
+			case GameServer.DELTA:
+				long from = payload.getLong();
+				if (from != version) throw new IOException("Delta from " + from + " applied to " + version);
+				version = payload.getLong();
+				tick = payload.getLong();
+				int changed = payload.getInt();
+				for (int i = 0; i < changed; i++) {
+					int cell = payload.getInt();
+					cells[cell] = payload.getShort();
+				}
+				readPlayers(payload);
+				break;
+			default:
+				break;
+		}
+		return type;
+	}
+
+	private void readPlayers(ByteBuffer payload) {
+		gameOver = payload.get() != 0;
+		int count = payload.getShort();
+		int known = names.length;
+		scores = new int[count];
+		alive = new boolean[count];
+		names = Arrays.copyOf(names, count);
+		for (int i = 0; i < count; i++) {
+			scores[i] = payload.getInt();
+			alive[i] = payload.get() != 0;
+			if (i >= known) {
+				byte[] name = new byte[payload.get() & 0xFF];
+				payload.get(name);
+				names[i] = new String(name, StandardCharsets.UTF_8);
+			}
+		}
+	}
+
+	private void readFully(ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) < 0) throw new IOException("Connection closed");
+		}
+	}
+
+	private void writeFully(ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	public int getPlayerId() {
+		return playerId;
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	public long getTick() {
+		return tick;
+	}
+
+	/**
+	 * Board column of the first cell the client has, the server only sends a window.
+	 */
+	public int getOriginX() {
+		return originX;
+	}
+
+	public int getOriginY() {
+		return originY;
+	}
+
+	public int getBoardWidth() {
+		return boardWidth;
+	}
+
+	public int getBoardHeight() {
+		return boardHeight;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Cell at the given position within the window.
+	 */
+	public int getCell(int x, int y) {
+		return cells[y * width + x];
+	}
+
+	public boolean isGameOver() {
+		return gameOver;
+	}
+
+	public int getPlayerCount() {
+		return scores.length;
+	}
+
+	public int getScore(int player) {
+		return scores[player];
+	}
+
+	public boolean isAlive(int player) {
+		return alive[player];
+	}
+
+	public String getName(int player) {
+		return names[player];
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
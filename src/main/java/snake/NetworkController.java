@@ -0,0 +1,46 @@
+package snake;
+
+/**
+ * Controller fed by a network connection, the server thread stores the latest input
+ * state sent by the client and the controller runner polls it like any other device.
+ */
+public class NetworkController implements Controller {
+
+	private final Player player;
+	private volatile IntVector2 direction;
+	private volatile boolean reset;
+
+	public NetworkController(Player player) {
+		this.player = player;
+	}
+
+	void update(IntVector2 direction, boolean reset) {
+		this.direction = direction;
+		this.reset = reset;
+	}
+
+	void disconnect() {
+		update(null, false);
+	}
+
+	@Override
+	public Player getPlayer() {
+		return player;
+	}
+
+	@Override
+	public IntVector2 getDirection() {
+		return direction;
+	}
+
+	@Override
+	public boolean getGameReset() {
+		return reset;
+	}
+
+	@Override
+	public boolean getGameQuit() {
+		// remote players cannot stop the server
+		return false;
+	}
+}
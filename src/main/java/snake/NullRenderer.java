@@ -0,0 +1,34 @@
+package snake;
+
+import com.googlecode.lanterna.TextColor;
+
+/**
+ * Draws nothing, for games that run headless but still want frames composed, for
+ * example to measure them.
+ */
+public class NullRenderer implements Renderer {
+
+	@Override
+	public void open(int cols, int rows) {
+	}
+
+	@Override
+	public void setColor(TextColor.ANSI color) {
+	}
+
+	@Override
+	public void moveTo(int x, int y) {
+	}
+
+	@Override
+	public void put(char c) {
+	}
+
+	@Override
+	public void flush() {
+	}
+
+	@Override
+	public void close() {
+	}
+}
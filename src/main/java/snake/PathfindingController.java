@@ -0,0 +1,23 @@
+package snake;
+
+/**
+ * Bot that follows the shortest path to the nearest food, found by a breadth first
+ * search, as long as the step it takes leaves enough room to fit its body. Otherwise it
+ * moves into the most open space it can reach.
+ */
+public class PathfindingController extends BotController {
+
+	public PathfindingController(Player player, Game game) {
+		super(player, game);
+	}
+
+	@Override
+	protected int decide(int head, int current) {
+		int room = player.getSnakeLength() + 2;
+		int toFood = search.nearestFood(board, head, offsets);
+		if (toFood >= 0 && search.reachable(board, head + offsets[toFood], head, room, offsets) >= room) {
+			return toFood;
+		}
+		return roomiest(head, current, room * 4);
+	}
+}
@@ -1,181 +1,306 @@
 package snake;
 
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.function.Consumer;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class Player {
 	
 	private Snake snake;
 	private IntVector2 movementDirection;
 	private IntVector2 previousMovementDirection;
-	private long lastUpdateTime;
-	private boolean dead = false;
-	private int score = 0;
 	private boolean tron;
+	// in tron mode the trail lives only in the board, as cells holding this player's id
+	private int trailLength;
 	private final long passiveScoreTime = 1000; // 1 second
 	private long lastScoreUpdate;
+	private String scoreDescription;
+	private int describedScore;
 
 	private final Game game;
+	private final PlayerTable table;
+	private final int index;
+	private final int id;
 	private final String name;
 	private final Color color;
-	private final Set<IntVector2> foodLocations;
 	private final Boundaries boundaries;
-	private final Map<IntVector2, Player> snakeSegments;
+	private final Board board;
 	
-	private final ReadWriteLock dirLock = new ReentrantReadWriteLock();
+	// written by the input thread, read by the game thread on every tick
+	private final AtomicReference<IntVector2> requestedDirection = new AtomicReference<IntVector2>();
+	private IntVector2 latchedDirection;
 	
-	public Player(Boundaries boundaries, Set<IntVector2> foodLocations, 
-				  Map<IntVector2, Player> snakeSegments, String name, Color color, boolean tron, Game game) {
+	public Player(Boundaries boundaries, Board board, int id, String name, Color color, boolean tron, Game game) {
+		this(boundaries, board, id, name, color, game);
+		this.reset(tron);
+	}
+
+	private Player(Boundaries boundaries, Board board, int id, String name, Color color, Game game) {
 		this.boundaries = boundaries;
-		this.foodLocations = foodLocations;
-		this.snakeSegments = snakeSegments;
+		this.board = board;
+		this.id = id;
 		this.name = name;
 		this.color = color;
 		this.game = game;
-		this.reset(tron);
+		this.table = game.getPlayerTable();
+		this.index = id - 1;
+	}
+
+	/**
+	 * Recreates a player written by {@link #checkpoint(ByteBuffer)}, its table row has to
+	 * exist already. The board is not touched, it is restored on its own.
+	 */
+	static Player restore(Boundaries boundaries, Board board, int id, String name, Color color, Game game, ByteBuffer in) {
+		Player player = new Player(boundaries, board, id, name, color, game);
+		PlayerTable table = player.table;
+		table.score[player.index] = in.getInt();
+		table.dead[player.index] = in.get() != 0;
+		table.lastUpdateTime[player.index] = in.getLong();
+		table.lastScoreUpdate[player.index] = in.getLong();
+		player.movementDirection = direction(in.get());
+		player.previousMovementDirection = direction(in.get());
+		player.latchedDirection = direction(in.get());
+		player.requestedDirection.set(player.latchedDirection);
+		player.tron = in.get() != 0;
+		player.trailLength = in.getInt();
+		player.snake = Snake.restore(in);
+		return player;
+	}
+
+	int checkpointSize() {
+		return 29 + snake.checkpointSize();
+	}
+
+	/**
+	 * Writes the table row, directions, mode and snake of this player. Input still waiting
+	 * in the mailbox is not kept, controllers post it again.
+	 */
+	void checkpoint(ByteBuffer out) {
+		out.putInt(table.score[index]);
+		out.put((byte) (table.dead[index] ? 1 : 0));
+		out.putLong(table.lastUpdateTime[index]);
+		out.putLong(table.lastScoreUpdate[index]);
+		out.put(code(movementDirection));
+		out.put(code(previousMovementDirection));
+		out.put(code(latchedDirection));
+		out.put((byte) (tron ? 1 : 0));
+		out.putInt(trailLength);
+		snake.checkpoint(out);
+	}
+
+	private static byte code(IntVector2 direction) {
+		if (direction == null) return -1;
+		if (direction.equals(Controller.UP)) return 0;
+		if (direction.equals(Controller.DOWN)) return 1;
+		if (direction.equals(Controller.LEFT)) return 2;
+		return 3;
+	}
+
+	private static IntVector2 direction(byte code) {
+		switch (code) {
+			case 0: return Controller.UP;
+			case 1: return Controller.DOWN;
+			case 2: return Controller.LEFT;
+			case 3: return Controller.RIGHT;
+			default: return null;
+		}
 	}
 
 	public void reset(boolean tron) {
-		this.snake = new Snake(Utils.randomVectorInBounds(new Boundaries(boundaries.getMinX() + 3, 
-																		 boundaries.getMaxX() - 3, 
-																		 boundaries.getMinY() + 3, 
-																		 boundaries.getMaxY() - 3)));
-		this.movementDirection = Utils.randomDirection();
+		int spawn = spawnCell(new Boundaries(boundaries.getMinX() + 3, 
+											 boundaries.getMaxX() - 3, 
+											 boundaries.getMinY() + 3, 
+											 boundaries.getMaxY() - 3));
+		if (this.snake == null) this.snake = new Snake(spawn);
+		else this.snake.reset(spawn);
+		this.movementDirection = Utils.randomDirection(game.getRandom());
 		this.previousMovementDirection = this.movementDirection;
-		this.score = 0;
-		this.dead = false;
-		this.snakeSegments.put(this.snake.head(), this);
+		this.table.score[index] = 0;
+		this.table.dead[index] = false;
+		this.board.set(this.snake.head(), this.id);
 		this.tron = tron;
+		this.trailLength = 1;
+	}
+
+	/**
+	 * Picks a free cell, preferably away from the walls. Only a completely full board puts
+	 * the new snake on top of something.
+	 */
+	private int spawnCell(Boundaries spawn) {
+		int cell = -1;
+		for (int attempt = 0; attempt < 8; attempt++) {
+			cell = board.randomFreeCell(game.getRandom());
+			if (cell < 0) break;
+			int x = board.x(cell);
+			int y = board.y(cell);
+			if (x >= spawn.getMinX() && x <= spawn.getMaxX() && y >= spawn.getMinY() && y <= spawn.getMaxY()) return cell;
+		}
+		if (cell >= 0) return cell;
+		return board.cell(Utils.randomVectorInBounds(game.getRandom(), spawn));
 	}
 	
+	/**
+	 * Posts the direction currently held on the controller, or null once it is released.
+	 * The game thread picks it up on its next tick, this never blocks.
+	 */
 	public void setMovementDirection(IntVector2 dir) {
-		try {
-			this.dirLock.writeLock().lock();
-			
-			if (dir == null) return;
-			
-			// snakes of length one can move in any direction
-			if (snake.length() == 1) {
-				this.movementDirection = dir;
-				return;
-			}
+		this.requestedDirection.set(dir);
+	}
+
+	/**
+	 * Takes the current mailbox value for this tick, returns true if it changed.
+	 */
+	boolean latchInput() {
+		IntVector2 dir = this.requestedDirection.get();
+		if (dir == this.latchedDirection) return false;
+		this.latchedDirection = dir;
+		return true;
+	}
+
+	IntVector2 getLatchedDirection() {
+		return this.latchedDirection;
+	}
+
+	private void applyRequestedDirection() {
+		IntVector2 dir = this.latchedDirection;
+
+		if (dir == null) return;
 			
-			if (this.previousMovementDirection.add(dir).hasMagnitudeZero()) return;
-		
+		// snakes of length one can move in any direction
+		if (length() == 1) {
 			this.movementDirection = dir;
-		} finally {
-			this.dirLock.writeLock().unlock();
+			return;
 		}
+			
+		if (this.previousMovementDirection.isOpposite(dir)) return;
+		
+		this.movementDirection = dir;
 	}
 	
 	private long timeBetweenUpdates() {
-		try {
-			this.dirLock.readLock().lock();
-			long base = Math.max(100, 150 - snake.length() + 1);
-			if (this.movementDirection.equals(Controller.UP) || this.movementDirection.equals(Controller.DOWN)) {
-				base *= 1.25;
-			}
-			return base;
-		} finally {
-			this.dirLock.readLock().unlock();
+		long base = Math.max(100, 150 - length() + 1);
+		if (this.movementDirection.equals(Controller.UP) || this.movementDirection.equals(Controller.DOWN)) {
+			base *= 1.25;
 		}
+		return base;
 	}
 
 	private void passiveScoreUpdate() {
-		long end = System.currentTimeMillis();
-		long delta = end - this.lastScoreUpdate;
+		long end = game.currentTime();
+		long delta = end - this.table.lastScoreUpdate[index];
 		if (delta < this.passiveScoreTime) return;
-		this.lastScoreUpdate = end;
-		this.score += Math.max(snake.segments().size() / 8, 1);
+		this.table.lastScoreUpdate[index] = end;
+		this.table.score[index] += Math.max(length() / 8, 1);
+		this.game.markChanged();
 	}
 
-	private void survivorPoints(Player other) {
-		game.forEachPlayer(player -> {
-			if (player == this || player == other || player.dead) return;
-			player.score += this.score / 2;
-		});
-	}
-	
-	public void update() {
-		if (dead) return;
+	/**
+	 * First phase of a tick: applies input and passive score and returns the cell this
+	 * player wants to move its head to, or {@link MoveResolver#NO_MOVE} if it does not
+	 * move this tick. Only reads the board.
+	 */
+	int planMove() {
+		if (table.dead[index]) return MoveResolver.NO_MOVE;
 
+		applyRequestedDirection();
 		passiveScoreUpdate();
 		
 		// sleep logic
-		long end = System.currentTimeMillis();
-		long secondsSinceLastUpdate = end - this.lastUpdateTime;
-		if (secondsSinceLastUpdate < timeBetweenUpdates()) return;
-		this.lastUpdateTime = end;
-		
-		try {
-			this.dirLock.readLock().lock();
+		long end = game.currentTime();
+		long secondsSinceLastUpdate = end - this.table.lastUpdateTime[index];
+		if (secondsSinceLastUpdate < timeBetweenUpdates()) return MoveResolver.NO_MOVE;
+		this.table.lastUpdateTime[index] = end;
+		this.game.markChanged();
 		
-			IntVector2 nextHead = snake.head().add(this.movementDirection);
-
-			// boundaries logic
-			if (!boundaries.isInBounds(nextHead)) {
-				dead = true;
-				this.survivorPoints(null);
-				return;
-			}
-		
-			// eating self or other snake logic
-			if (this.snakeSegments.containsKey(nextHead)) {
-				Player other = this.snakeSegments.get(nextHead);
-				if (other != this) {
-					other.score += this.score;
-				}
-				dead = true;
-				this.survivorPoints(other);
-				return;
-			}
-			
-			// movement logic
-			this.snake.segments().forEach(this.snakeSegments::remove);
-			this.snake.move(movementDirection);
-			this.previousMovementDirection = this.movementDirection;
-			this.snake.segments().forEach(segment -> this.snakeSegments.put(segment, this));
-			
-		} finally {
-			this.dirLock.readLock().unlock();
-		}
+		return snake.head() + board.offset(this.movementDirection);
+	}
 
+	/**
+	 * Moves the head onto a cell the resolver found free. May run in parallel with other
+	 * players, so the free cell index is left to the resolver.
+	 */
+	void commitMove(int nextHead) {
+		int vacated = this.snake.move(nextHead);
 		if (tron) {
-			this.snake.growOnNextMove();
-			return;
-		}
-		
-		// grow logic
-		for (IntVector2 segment : this.snake.segments()) {
-			if (this.foodLocations.contains(segment)) {
-				// score logic
-				score += this.snake.segments().size() * 2;
-				this.snake.growOnNextMove();
-				this.foodLocations.remove(segment);
-			}
+			// the old head stays on the board as trail, the snake itself only keeps the head
+			vacated = Snake.NO_CELL;
+			this.trailLength++;
+		} else if (vacated != Snake.NO_CELL) {
+			this.board.setDeferred(vacated, Board.EMPTY);
 		}
+		this.table.vacated[index] = vacated;
+		this.board.setDeferred(nextHead, this.id);
+		this.previousMovementDirection = this.movementDirection;
+	}
+
+	/**
+	 * Length of the snake, or of the whole trail in tron mode.
+	 */
+	private int length() {
+		return tron ? this.trailLength : this.snake.length();
+	}
+
+	/**
+	 * Eats the food on the new head, if any. Called once all moves of the tick are done.
+	 */
+	void eat(int head) {
+		if (tron || !this.board.hasFood(head)) return;
+
+		// score logic
+		this.table.score[index] += this.snake.length() * 2;
+		this.snake.growOnNextMove();
+		this.board.removeFood(head);
 	}
 	
 	public boolean alive() {
-		return !dead;
+		return !table.dead[index];
 	}
 
 	public String getScoreDescription() {
-		return String.format("%-10s %10d", getName(), getScore());
-	}
-	
-	public void forEachSnakeSegment(Consumer<IntVector2> consumer) {
-		this.snake.segments().forEach(consumer);
+		int score = getScore();
+		if (scoreDescription == null || describedScore != score) {
+			describedScore = score;
+			scoreDescription = String.format("%-10s %10d", getName(), describedScore);
+		}
+		return scoreDescription;
 	}
 	
-	public IntVector2 getSnakeHead() {
+	public int getSnakeHead() {
 		return this.snake.head();
 	}
 
+	public int getSnakeLength() {
+		return length();
+	}
+
+	/**
+	 * Sizes the snake for the given length so that growing up to it never allocates.
+	 */
+	void reserveSnake(int cells) {
+		this.snake.ensureCapacity(cells);
+	}
+
+	/**
+	 * Puts the snake on the given cells, head first, moving the given way. Lets tests lay
+	 * out a board by hand outside tron mode, the cells have to be empty and adjacent.
+	 */
+	void place(IntVector2 direction, int... cells) {
+		this.snake.forEachSegment(cell -> this.board.set(cell, Board.EMPTY));
+		this.snake.reset(cells[cells.length - 1]);
+		for (int i = cells.length - 2; i >= 0; i--) {
+			this.snake.growOnNextMove();
+			this.snake.move(cells[i]);
+		}
+		for (int cell : cells) {
+			this.board.set(cell, this.id);
+		}
+		this.movementDirection = direction;
+		this.previousMovementDirection = direction;
+	}
+
+	public int getId() {
+		return id;
+	}
+
 	public String getName() {
 		return name;
 	}
@@ -185,6 +310,6 @@ public class Player {
 	}
 	
 	public int getScore() {
-		return this.score;
+		return this.table.score[index];
 	}
 }
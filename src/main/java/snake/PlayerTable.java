@@ -0,0 +1,42 @@
+package snake;
+
+import java.util.Arrays;
+
+/**
+ * The per player state a tick touches, kept as parallel arrays indexed by player id - 1
+ * so that moving hundreds of snakes walks flat arrays instead of player objects.
+ */
+final class PlayerTable {
+
+	int size;
+	int[] score = new int[4];
+	boolean[] dead = new boolean[4];
+	long[] lastUpdateTime = new long[4];
+	long[] lastScoreUpdate = new long[4];
+
+	// scratch written and consumed within a single tick
+	int[] target = new int[4];
+	int[] vacated = new int[4];
+	int[] outcome = new int[4];
+	int[] gain = new int[4];
+	int[] rebate = new int[4];
+
+	/**
+	 * Makes room for one more player and returns its index.
+	 */
+	int add() {
+		if (size == score.length) {
+			int capacity = size * 2;
+			score = Arrays.copyOf(score, capacity);
+			dead = Arrays.copyOf(dead, capacity);
+			lastUpdateTime = Arrays.copyOf(lastUpdateTime, capacity);
+			lastScoreUpdate = Arrays.copyOf(lastScoreUpdate, capacity);
+			target = Arrays.copyOf(target, capacity);
+			vacated = Arrays.copyOf(vacated, capacity);
+			outcome = Arrays.copyOf(outcome, capacity);
+			gain = Arrays.copyOf(gain, capacity);
+			rebate = Arrays.copyOf(rebate, capacity);
+		}
+		return size++;
+	}
+}
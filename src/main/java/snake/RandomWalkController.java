@@ -0,0 +1,61 @@
+package snake;
+
+/**
+ * Bot that wanders the board, turning now and then and steering away from whatever is
+ * directly in front of it. Good enough to exercise the game without a human.
+ */
+public class RandomWalkController implements Controller {
+
+	private static final IntVector2[] DIRECTIONS = new IntVector2[] {
+		Controller.UP, Controller.RIGHT, Controller.DOWN, Controller.LEFT
+	};
+
+	private final Player player;
+	private final Board board;
+	private final Rng random;
+	private IntVector2 direction;
+
+	public RandomWalkController(Player player, Game game, long seed) {
+		this.player = player;
+		this.board = game.getBoard();
+		this.random = new Rng(seed);
+	}
+
+	@Override
+	public Player getPlayer() {
+		return player;
+	}
+
+	@Override
+	public void poll() {
+		if (direction == null || random.nextInt(16) == 0 || !isFree(direction)) {
+			int start = random.nextInt(DIRECTIONS.length);
+			for (int i = 0; i < DIRECTIONS.length; i++) {
+				IntVector2 candidate = DIRECTIONS[(start + i) % DIRECTIONS.length];
+				if (isFree(candidate)) {
+					direction = candidate;
+					return;
+				}
+			}
+		}
+	}
+
+	private boolean isFree(IntVector2 candidate) {
+		return board.isEmpty(player.getSnakeHead() + board.offset(candidate));
+	}
+
+	@Override
+	public IntVector2 getDirection() {
+		return direction;
+	}
+
+	@Override
+	public boolean getGameReset() {
+		return false;
+	}
+
+	@Override
+	public boolean getGameQuit() {
+		return false;
+	}
+}
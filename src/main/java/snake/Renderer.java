@@ -0,0 +1,48 @@
+package snake;
+
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+
+import com.googlecode.lanterna.TextColor;
+
+/**
+ * Where the {@link FrameGrid} sends the cells that changed in a frame. A frame is any
+ * number of color changes, cursor moves and characters followed by one {@link #flush()}.
+ */
+public interface Renderer extends Closeable {
+
+	/**
+	 * Prepares a blank screen of the given size.
+	 */
+	void open(int cols, int rows) throws IOException;
+
+	void setColor(TextColor.ANSI color) throws IOException;
+
+	void moveTo(int x, int y) throws IOException;
+
+	/**
+	 * Writes one character at the cursor and moves the cursor right by one.
+	 */
+	void put(char c) throws IOException;
+
+	/**
+	 * Ends a frame.
+	 */
+	void flush() throws IOException;
+
+	/**
+	 * Creates a renderer by name: "lanterna" (the Swing terminal window), "ansi" (escape
+	 * codes on standard output, for plain terminals) or "null" (draws nothing).
+	 */
+	static Renderer create(String kind) {
+		switch (kind.toLowerCase()) {
+			case "lanterna": return new LanternaRenderer();
+			case "ansi": return new AnsiRenderer(Channels.newChannel(new FileOutputStream(FileDescriptor.out)));
+			case "null": return new NullRenderer();
+			default: throw new IllegalArgumentException("Unknown renderer " + kind);
+		}
+	}
+}
@@ -0,0 +1,36 @@
+package snake;
+
+/**
+ * Small seeded random number generator (splitmix64). Each game owns one so that a game
+ * is fully determined by its seed and its inputs, the whole state is a single long.
+ */
+public class Rng {
+
+	private long state;
+
+	public Rng(long seed) {
+		this.state = seed;
+	}
+
+	public long nextLong() {
+		long z = (state += 0x9E3779B97F4A7C15L);
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Returns a value in {@code [0, bound)}.
+	 */
+	public int nextInt(int bound) {
+		return (int) (((nextLong() >>> 32) * bound) >>> 32);
+	}
+
+	public long getState() {
+		return state;
+	}
+
+	public void setState(long state) {
+		this.state = state;
+	}
+}
@@ -0,0 +1,43 @@
+package snake;
+
+/**
+ * One player's result in a finished match, as kept by the {@link ScoreStore}.
+ */
+public final class ScoreEntry {
+
+	private final String name;
+	private final int score;
+	private final boolean tron;
+	private final long time;
+
+	ScoreEntry(String name, int score, boolean tron, long time) {
+		this.name = name;
+		this.score = score;
+		this.tron = tron;
+		this.time = time;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getScore() {
+		return score;
+	}
+
+	public boolean isTron() {
+		return tron;
+	}
+
+	/**
+	 * When the match ended, in milliseconds since the epoch.
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%-10s %10d %s", name, score, tron ? "tron" : "snake");
+	}
+}
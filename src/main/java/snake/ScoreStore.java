@@ -0,0 +1,415 @@
+package snake;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the result of every finished match. Results are appended to a binary log,
+ * {@code scores.log}, and a memory mapped index, {@code scores.idx}, holds the best of
+ * them sorted: all-time, per mode and per player. Queries only read the index.
+ * <p>
+ * The index remembers how much of the log it covers, so opening a store only has to
+ * index what was appended after the last time the index was written. A missing or
+ * inconsistent index is rebuilt from the whole log, and a record cut short by a crash is
+ * dropped from the end of the log.
+ * <p>
+ * Finished matches are written by a background thread so that the game never waits for
+ * the disk, queries write whatever is still pending first.
+ * <p>
+ * Log layout: the magic {@code SNKS} and a version byte, then one record per player and
+ * match: the name as a short length prefixed utf-8 string, the score (int), a tron flag
+ * byte and the time (long, epoch millis).
+ * <p>
+ * Index layout: a 64 byte header (magic {@code SNKI}, version, indexed log length and the
+ * entry counts), the all-time, snake and tron tables of {@link #TOP} entries and then an
+ * open addressing table of {@link #PLAYER_SLOTS} players, each with the length and the first
+ * {@link #NAME_BYTES} bytes of its name and its best {@link #PLAYER_TOP} entries. An entry is the score, the player slot, the time, the log
+ * offset of the record and the tron flag.
+ */
+public class ScoreStore implements Closeable {
+
+	public static final int TOP = 64;
+	public static final int PLAYER_TOP = 16;
+	public static final int PLAYER_SLOTS = 4096;
+
+	private static final int LOG_MAGIC = 0x534E4B53; // SNKS
+	private static final int INDEX_MAGIC = 0x534E4B49; // SNKI
+	private static final byte VERSION = 1;
+	private static final int INDEX_VERSION = 2;
+	private static final int LOG_HEADER = 5;
+
+	private static final int ENTRY = 32;
+	private static final int NAME_BYTES = 31;
+	private static final int SLOT = 40 + PLAYER_TOP * ENTRY;
+
+	private static final int INDEXED_LENGTH = 8;
+	private static final int COUNT_ALL = 16;
+	private static final int COUNT_SNAKE = 20;
+	private static final int COUNT_TRON = 24;
+	private static final int TABLE_ALL = 64;
+	private static final int TABLE_SNAKE = TABLE_ALL + TOP * ENTRY;
+	private static final int TABLE_TRON = TABLE_SNAKE + TOP * ENTRY;
+	private static final int SLOTS = TABLE_TRON + TOP * ENTRY;
+	private static final int INDEX_SIZE = SLOTS + PLAYER_SLOTS * SLOT;
+
+	private final FileChannel log;
+	private final FileChannel indexChannel;
+	private final MappedByteBuffer index;
+	private final ByteBuffer record = ByteBuffer.allocate(2 + 255 * 3 + 13);
+	// also guards closed, so a match is either queued before the writer stops or dropped
+	private final Queue<ScoreEntry> pending = new ConcurrentLinkedQueue<ScoreEntry>();
+	private boolean closed;
+	private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "score-writer");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	public ScoreStore(Path directory) throws IOException {
+		Files.createDirectories(directory);
+		this.log = FileChannel.open(directory.resolve("scores.log"), StandardOpenOption.CREATE, 
+									StandardOpenOption.READ, StandardOpenOption.WRITE);
+		this.indexChannel = FileChannel.open(directory.resolve("scores.idx"), StandardOpenOption.CREATE, 
+											 StandardOpenOption.READ, StandardOpenOption.WRITE);
+		this.index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, INDEX_SIZE);
+
+		if (log.size() == 0) {
+			ByteBuffer header = ByteBuffer.allocate(LOG_HEADER);
+			header.putInt(LOG_MAGIC).put(VERSION).flip();
+			log.write(header, 0);
+		} else {
+			ByteBuffer header = ByteBuffer.allocate(LOG_HEADER);
+			log.read(header, 0);
+			if (header.getInt(0) != LOG_MAGIC || header.get(4) != VERSION) {
+				throw new IOException("Not a score log of version " + VERSION);
+			}
+		}
+
+		long indexed = index.getLong(INDEXED_LENGTH);
+		if (index.getInt(0) != INDEX_MAGIC || index.getInt(4) != INDEX_VERSION || indexed < LOG_HEADER || indexed > log.size()) {
+			clearIndex();
+			indexed = LOG_HEADER;
+		}
+		catchUp(indexed);
+	}
+
+	private void clearIndex() {
+		byte[] zeros = new byte[SLOT];
+		index.clear();
+		for (int position = 0; position < INDEX_SIZE; position += SLOT) {
+			index.put(zeros, 0, Math.min(SLOT, INDEX_SIZE - position));
+		}
+		index.putInt(0, INDEX_MAGIC);
+		index.putInt(4, INDEX_VERSION);
+		index.putLong(INDEXED_LENGTH, LOG_HEADER);
+	}
+
+	/**
+	 * Indexes the records from the given log offset to the end of the log, truncating the
+	 * log at the first record that is incomplete.
+	 */
+	private void catchUp(long from) throws IOException {
+		long end = log.size();
+		if (from >= end) return;
+
+		// not closed, that would close the log
+		DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(log.position(from))));
+		long offset = from;
+		while (offset < end) {
+			byte[] name;
+			int score;
+			boolean tron;
+			long time;
+			try {
+				name = new byte[in.readUnsignedShort()];
+				in.readFully(name);
+				score = in.readInt();
+				tron = in.readByte() != 0;
+				time = in.readLong();
+			} catch (EOFException e) {
+				log.truncate(offset);
+				end = offset;
+				break;
+			}
+			index(new String(name, StandardCharsets.UTF_8), score, tron, time, offset);
+			offset += 2 + name.length + 13;
+		}
+		index.putLong(INDEXED_LENGTH, end);
+	}
+
+	/**
+	 * Records every player of a finished match. Only copies the results, the writer thread
+	 * appends them. Matches that end after the store was closed are reported and dropped.
+	 */
+	public void record(Game game) {
+		long time = System.currentTimeMillis();
+		List<Player> players = game.getPlayers();
+		synchronized (pending) {
+			if (closed) {
+				System.err.println("Score store closed, match of " + players.size() + " players not recorded");
+				return;
+			}
+			for (int i = 0; i < players.size(); i++) {
+				Player player = players.get(i);
+				pending.add(new ScoreEntry(player.getName(), player.getScore(), game.isTron(), time));
+			}
+			writer.execute(this::drain);
+		}
+	}
+
+	private synchronized void drain() {
+		ScoreEntry entry;
+		while ((entry = pending.poll()) != null) {
+			record(entry.getName(), entry.getScore(), entry.isTron(), entry.getTime());
+		}
+	}
+
+	public synchronized void record(String name, int score, boolean tron, long time) {
+		byte[] bytes = logBytes(name);
+		try {
+			long offset = log.size();
+			record.clear();
+			record.putShort((short) bytes.length).put(bytes).putInt(score).put((byte) (tron ? 1 : 0)).putLong(time);
+			record.flip();
+			while (record.hasRemaining()) {
+				log.write(record, offset + record.position());
+			}
+
+			index(name, score, tron, time, offset);
+			index.putLong(INDEXED_LENGTH, offset + record.limit());
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void index(String name, int score, boolean tron, long time, long offset) {
+		int slot = slot(name, true);
+		insert(TABLE_ALL, COUNT_ALL, TOP, score, slot, time, offset, tron);
+		insert(tron ? TABLE_TRON : TABLE_SNAKE, tron ? COUNT_TRON : COUNT_SNAKE, TOP, score, slot, time, offset, tron);
+		if (slot >= 0) {
+			int base = SLOTS + slot * SLOT;
+			insert(base + 40, base + 32, PLAYER_TOP, score, slot, time, offset, tron);
+		}
+	}
+
+	/**
+	 * Keeps a table sorted by score, best first, an equal score goes after the older one.
+	 */
+	private void insert(int table, int countAt, int capacity, int score, int slot, long time, long offset, boolean tron) {
+		int count = index.getInt(countAt);
+		// a crash after indexing a record but before storing the indexed length indexes it again
+		for (int i = 0; i < count; i++) {
+			if (index.getLong(table + i * ENTRY + 16) == offset) return;
+		}
+
+		int position = count;
+		while (position > 0 && index.getInt(table + (position - 1) * ENTRY) < score) {
+			position--;
+		}
+		if (position == capacity) return;
+
+		int last = Math.min(count, capacity - 1);
+		for (int i = last; i > position; i--) {
+			int to = table + i * ENTRY;
+			int from = to - ENTRY;
+			index.putInt(to, index.getInt(from));
+			index.putInt(to + 4, index.getInt(from + 4));
+			index.putLong(to + 8, index.getLong(from + 8));
+			index.putLong(to + 16, index.getLong(from + 16));
+			index.putInt(to + 24, index.getInt(from + 24));
+		}
+
+		int at = table + position * ENTRY;
+		index.putInt(at, score);
+		index.putInt(at + 4, slot);
+		index.putLong(at + 8, time);
+		index.putLong(at + 16, offset);
+		index.putInt(at + 24, tron ? 1 : 0);
+		if (count < capacity) index.putInt(countAt, count + 1);
+	}
+
+	/**
+	 * The name as it is kept in the log, at most 255 bytes.
+	 */
+	private static byte[] logBytes(String name) {
+		byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+		return bytes.length > 255 ? Arrays.copyOf(bytes, 255) : bytes;
+	}
+
+	/**
+	 * Finds the slot of a player, optionally claiming a free one, or returns -1. A slot
+	 * holds the length of the whole name but only its first {@link #NAME_BYTES} bytes,
+	 * longer names are told apart by the name logged with the slot's first entry.
+	 */
+	private int slot(String name, boolean claim) {
+		byte[] bytes = logBytes(name);
+		byte[] prefix = bytes.length > NAME_BYTES ? Arrays.copyOf(bytes, NAME_BYTES) : bytes;
+		int start = (Arrays.hashCode(prefix) & 0x7FFFFFFF) % PLAYER_SLOTS;
+		for (int probe = 0; probe < PLAYER_SLOTS; probe++) {
+			int slot = (start + probe) % PLAYER_SLOTS;
+			int base = SLOTS + slot * SLOT;
+			int length = index.get(base) & 0xFF;
+			if (length == 0) {
+				if (!claim) return -1;
+				index.put(base, (byte) bytes.length);
+				for (int i = 0; i < prefix.length; i++) {
+					index.put(base + 1 + i, prefix[i]);
+				}
+				return slot;
+			}
+			if (length == bytes.length && matches(base + 1, prefix) && (length <= NAME_BYTES || logged(base, bytes))) return slot;
+		}
+		return -1;
+	}
+
+	/**
+	 * Whether the first entry of a slot was logged with the given name, a slot claimed
+	 * just before a crash has no entry yet and takes any name.
+	 */
+	private boolean logged(int base, byte[] bytes) {
+		if (index.getInt(base + 32) == 0) return true;
+		try {
+			long offset = index.getLong(base + 40 + 16);
+			ByteBuffer logged = ByteBuffer.allocate(bytes.length);
+			log.read(logged, offset + 2);
+			return Arrays.equals(logged.array(), bytes);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private boolean matches(int at, byte[] bytes) {
+		for (int i = 0; i < bytes.length; i++) {
+			if (index.get(at + i) != bytes[i]) return false;
+		}
+		return true;
+	}
+
+	private String slotName(int slot) {
+		int base = SLOTS + slot * SLOT;
+		byte[] bytes = new byte[index.get(base) & 0xFF];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = index.get(base + 1 + i);
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private String logName(long offset) throws IOException {
+		ByteBuffer length = ByteBuffer.allocate(2);
+		log.read(length, offset);
+		ByteBuffer bytes = ByteBuffer.allocate(length.getShort(0) & 0xFFFF);
+		log.read(bytes, offset + 2);
+		return new String(bytes.array(), StandardCharsets.UTF_8);
+	}
+
+	private List<ScoreEntry> read(int table, int countAt, int k) {
+		int count = Math.min(k, index.getInt(countAt));
+		List<ScoreEntry> entries = new ArrayList<ScoreEntry>(count);
+		try {
+			for (int i = 0; i < count; i++) {
+				int at = table + i * ENTRY;
+				int slot = index.getInt(at + 4);
+				// names that did not fit in a slot come from the log
+				String name = slot >= 0 && (index.get(SLOTS + slot * SLOT) & 0xFF) <= NAME_BYTES ? slotName(slot) : logName(index.getLong(at + 16));
+				entries.add(new ScoreEntry(name, index.getInt(at), index.getInt(at + 24) != 0, index.getLong(at + 8)));
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		return entries;
+	}
+
+	/**
+	 * Best results of all time, at most {@link #TOP}.
+	 */
+	public synchronized List<ScoreEntry> top(int k) {
+		drain();
+		return read(TABLE_ALL, COUNT_ALL, k);
+	}
+
+	/**
+	 * Best results of one mode, at most {@link #TOP}.
+	 */
+	public synchronized List<ScoreEntry> top(boolean tron, int k) {
+		drain();
+		return tron ? read(TABLE_TRON, COUNT_TRON, k) : read(TABLE_SNAKE, COUNT_SNAKE, k);
+	}
+
+	/**
+	 * Best results of one player, at most {@link #PLAYER_TOP}.
+	 */
+	public synchronized List<ScoreEntry> topOf(String name, int k) {
+		drain();
+		int slot = slot(name, false);
+		if (slot < 0) return new ArrayList<ScoreEntry>();
+		int base = SLOTS + slot * SLOT;
+		return read(base + 40, base + 32, k);
+	}
+
+	/**
+	 * Writes the pending matches and closes the files, matches that end later are dropped.
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (pending) {
+			if (closed) return;
+			closed = true;
+			writer.shutdown();
+		}
+		try {
+			writer.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		synchronized (this) {
+			drain();
+			index.force();
+			log.force(true);
+			log.close();
+			indexChannel.close();
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("Usage: ScoreStore <directory> [--snake | --tron | --player <name>] [count]");
+			return;
+		}
+
+		try (ScoreStore store = new ScoreStore(Paths.get(args[0]))) {
+			int k = 10;
+			List<ScoreEntry> entries = null;
+			for (int i = 1; i < args.length; i++) {
+				if ("--snake".equalsIgnoreCase(args[i])) entries = store.top(false, TOP);
+				else if ("--tron".equalsIgnoreCase(args[i])) entries = store.top(true, TOP);
+				else if ("--player".equalsIgnoreCase(args[i]) && i + 1 < args.length) entries = store.topOf(args[++i], PLAYER_TOP);
+				else k = Integer.parseInt(args[i]);
+			}
+			if (entries == null) entries = store.top(TOP);
+			for (int i = 0; i < Math.min(k, entries.size()); i++) {
+				System.out.println(entries.get(i));
+			}
+		}
+	}
+}
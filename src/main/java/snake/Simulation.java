@@ -0,0 +1,65 @@
+package snake;
+
+import java.util.List;
+
+/**
+ * Plays a single headless game on a virtual clock, with bots on every seat. The game is
+ * stepped tick by tick on the calling thread so many simulations can share a pool.
+ */
+public class Simulation {
+
+	private final int rows;
+	private final int cols;
+	private final int numPlayers;
+	private final boolean tron;
+	private final long maxTicks;
+	private final String[] bots;
+
+	public Simulation(int rows, int cols, int numPlayers, boolean tron, long maxTicks) {
+		this(rows, cols, numPlayers, tron, maxTicks, "random");
+	}
+
+	/**
+	 * The bots are a comma separated list of {@link BotController#create} names, handed
+	 * out to the seats in turn.
+	 */
+	public Simulation(int rows, int cols, int numPlayers, boolean tron, long maxTicks, String bots) {
+		this.rows = rows;
+		this.cols = cols;
+		this.numPlayers = numPlayers;
+		this.tron = tron;
+		this.maxTicks = maxTicks;
+		this.bots = bots.split(",");
+	}
+
+	public MatchResult play(long seed) {
+		Game game = new Game(rows, cols, null, tron, new VirtualClock(), seed);
+		ControllerRunner controllers = new ControllerRunner(game, null);
+
+		for (int i = 0; i < numPlayers; i++) {
+			Player player = game.addPlayer("Bot " + (i + 1));
+			controllers.addController(BotController.create(bots[i % bots.length], player, game, seed * 31 + i));
+		}
+
+		List<Player> players = game.getPlayers();
+		long[] ticksSurvived = new long[players.size()];
+
+		while (game.getTick() < maxTicks && !game.isGameOver()) {
+			controllers.pollOnce();
+			game.tick();
+
+			for (int i = 0; i < players.size(); i++) {
+				if (players.get(i).alive()) ticksSurvived[i] = game.getTick();
+			}
+		}
+
+		String[] names = new String[players.size()];
+		int[] scores = new int[players.size()];
+		for (int i = 0; i < players.size(); i++) {
+			names[i] = players.get(i).getName();
+			scores[i] = players.get(i).getScore();
+		}
+
+		return new MatchResult(seed, tron, names, scores, ticksSurvived, game.getTick());
+	}
+}
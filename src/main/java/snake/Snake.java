@@ -1,46 +1,133 @@
 package snake;
 
-import java.util.ArrayList;
-import java.util.Collection;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
 
+/**
+ * Snake body stored as board cells in a ring buffer, the head is slot zero. Moving only
+ * writes the new head and, unless the snake is growing, hands back the tail it left.
+ * The ring doubles when the snake outgrows it and is kept when the snake is reset, so a
+ * game only allocates when a snake gets longer than any before it in its seat.
+ */
 public class Snake {
 
-	private ArrayList<IntVector2> segments = new ArrayList<IntVector2>();
+	public static final int NO_CELL = -1;
+
+	private int[] segments = new int[8];
+	private int head = 0;
+	private int length = 1;
 	private int amountToGrow = 0;
 	
-	public Snake(IntVector2 head) {
-		segments.add(head);
+	public Snake(int head) {
+		segments[0] = head;
+	}
+
+	/**
+	 * Starts over as a snake of length one on the given cell, keeping the ring.
+	 */
+	void reset(int head) {
+		Arrays.fill(segments, NO_CELL);
+		this.head = 0;
+		this.length = 1;
+		this.amountToGrow = 0;
+		segments[0] = head;
+	}
+
+	/**
+	 * Sizes the ring for a snake of the given length up front.
+	 */
+	void ensureCapacity(int cells) {
+		while (segments.length < cells) {
+			grow();
+		}
 	}
 	
-	public IntVector2 head() {
-		return this.segments.get(0);
+	public int head() {
+		return this.segments[head];
 	}
 	
-	public void move(IntVector2 direction) {
-		IntVector2 tail = segments.get(segments.size() - 1);
-		IntVector2 head = segments.get(0);
-		
-		for (int i = segments.size() - 1; i > 0; i--) {
-			segments.set(i, segments.get(i - 1));
-		}
-		
-		segments.set(0, head.add(direction));
-		
+	/**
+	 * Moves the head onto the given cell and returns the cell vacated by the tail, or
+	 * {@link #NO_CELL} when the snake grew instead.
+	 */
+	public int move(int nextHead) {
+		int mask = segments.length - 1;
+		int vacated = NO_CELL;
+
 		if (amountToGrow > 0) {
-			segments.add(tail);
+			if (length == segments.length) {
+				grow();
+				mask = segments.length - 1;
+			}
+			length++;
 			amountToGrow--;
+		} else {
+			vacated = segments[(head + length - 1) & mask];
+		}
+
+		head = (head - 1) & mask;
+		segments[head] = nextHead;
+
+		return vacated;
+	}
+
+	private void grow() {
+		int[] larger = new int[segments.length * 2];
+		for (int i = 0; i < length; i++) {
+			larger[i] = segments[(head + i) & (segments.length - 1)];
 		}
+		Arrays.fill(larger, length, larger.length, NO_CELL);
+		segments = larger;
+		head = 0;
 	}
 	
 	public int length() {
-		return segments.size();
+		return length;
+	}
+
+	/**
+	 * Returns the i-th cell counting back from the head.
+	 */
+	public int segment(int i) {
+		return segments[(head + i) & (segments.length - 1)];
 	}
 	
-	public Collection<IntVector2> segments() {
-		return this.segments;
+	public void forEachSegment(IntConsumer consumer) {
+		for (int i = 0; i < length; i++) {
+			consumer.accept(segments[(head + i) & (segments.length - 1)]);
+		}
 	}
 	
 	public void growOnNextMove() {
 		amountToGrow++;
 	}
+
+	int checkpointSize() {
+		return 8 + 4 * length;
+	}
+
+	/**
+	 * Writes the length, the pending growth and the cells head first.
+	 */
+	void checkpoint(ByteBuffer out) {
+		out.putInt(length);
+		out.putInt(amountToGrow);
+		int first = Math.min(length, segments.length - head);
+		out.asIntBuffer().put(segments, head, first).put(segments, 0, length - first);
+		out.position(out.position() + 4 * length);
+	}
+
+	static Snake restore(ByteBuffer in) {
+		int length = in.getInt();
+		int amountToGrow = in.getInt();
+		Snake snake = new Snake(NO_CELL);
+		snake.segments = new int[Math.max(8, Integer.highestOneBit(Math.max(1, length - 1)) << 1)];
+		in.asIntBuffer().get(snake.segments, 0, length);
+		in.position(in.position() + 4 * length);
+		Arrays.fill(snake.segments, length, snake.segments.length, NO_CELL);
+		snake.length = length;
+		snake.amountToGrow = amountToGrow;
+		return snake;
+	}
 }
@@ -0,0 +1,22 @@
+package snake;
+
+import java.util.concurrent.locks.LockSupport;
+
+public class SystemClock implements Clock {
+
+	public static final SystemClock INSTANCE = new SystemClock();
+
+	@Override
+	public long nanoTime() {
+		return System.nanoTime();
+	}
+
+	@Override
+	public void parkUntil(long deadlineNanos) {
+		long remaining;
+		while ((remaining = deadlineNanos - System.nanoTime()) > 0) {
+			if (Thread.currentThread().isInterrupted()) return;
+			LockSupport.parkNanos(remaining);
+		}
+	}
+}
@@ -1,196 +1,288 @@
 package snake;
 
 import java.io.IOException;
-import java.lang.reflect.Field;
-import java.nio.charset.Charset;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
-import com.googlecode.lanterna.SGR;
-import com.googlecode.lanterna.TerminalSize;
 import com.googlecode.lanterna.TextColor;
-import com.googlecode.lanterna.terminal.DefaultTerminalFactory;
-import com.googlecode.lanterna.terminal.Terminal;
-import com.googlecode.lanterna.terminal.swing.AWTTerminalFontConfiguration;
 
 public class TerminalGameDisplayer implements Runnable {
 
-	private long lastUpdate;
-	private Terminal terminal;
+	private long nextFrame;
+	private final Renderer renderer;
+	private FrameGrid grid;
 	
 	private final long millisBetweenUpdates = 68; // 60 fps = 17, 30 fps = 34, 15 fps = 68
 	private final Game game;
 	private final int rows;
 	private final int cols;
 	private final Thread mainThread;
+	private volatile boolean showStats;
+	private String[] stats;
+	private long nextStats;
+	private String[] scoreboard;
+	private TextColor.ANSI[] scoreboardColors;
+	private volatile CompletableFuture<Void> opened;
+	private volatile long firstFrameMillis = -1;
 	
 	public TerminalGameDisplayer(Game game, Thread main) {
-		this.rows = game.getBoundaries().getMaxY() + 1;
-		this.cols = game.getBoundaries().getMaxX() + 1;
+		this(game, main, game.getBoard().getWidth(), game.getBoard().getHeight());
+	}
+
+	/**
+	 * Shows at most a window of the given size, boards larger than that are drawn around
+	 * the players still alive.
+	 */
+	public TerminalGameDisplayer(Game game, Thread main, int viewCols, int viewRows) {
+		this(game, main, viewCols, viewRows, new LanternaRenderer());
+	}
+
+	public TerminalGameDisplayer(Game game, Thread main, int viewCols, int viewRows, Renderer renderer) {
+		this.renderer = renderer;
+		this.rows = Math.min(viewRows, game.getBoard().getHeight());
+		this.cols = Math.min(viewCols, game.getBoard().getWidth());
 		this.game = game;
 		this.mainThread = main;
 	}
 	
-	private boolean shouldSleep() {
-		long end = System.currentTimeMillis();
-		long delta = end - lastUpdate;
-		if (delta < millisBetweenUpdates) return true;
-		
-		lastUpdate = end;
-		
-		return false;
+	/**
+	 * Draws the game metrics over the top left of the board, they have to be enabled on
+	 * the game as well.
+	 */
+	public void showStats(boolean show) {
+		this.showStats = show;
 	}
-	
-	private void writeString(Terminal terminal, String str, int x, int y, TextColor color) {
-		try {
-			terminal.setForegroundColor(color);
-			terminal.setCursorPosition(x, y);
-			char[] chars = str.toCharArray();
-			for (int i = 0; i < chars.length; i++) {
-				terminal.putCharacter(chars[i]);
+
+	/**
+	 * Starts opening the screen on the given executor, for example while the game is still
+	 * being set up, {@link #run()} then waits for it instead of opening it itself.
+	 */
+	public void openEarly(Executor executor) {
+		opened = CompletableFuture.runAsync(() -> {
+			try {
+				renderer.open(cols, rows);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
 			}
+		}, executor);
+	}
+
+	/**
+	 * Closes a screen opened by {@link #openEarly(Executor)} that will never be drawn on.
+	 */
+	public void discard() {
+		if (opened == null) return;
+		try {
+			opened.join();
+			renderer.close();
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
 	}
+
+	/**
+	 * Milliseconds from the start of the JVM until the first frame was flushed, -1 while
+	 * nothing has been drawn.
+	 */
+	public long getFirstFrameMillis() {
+		return firstFrameMillis;
+	}
+
+	private void sleepUntilNextFrame() {
+		nextFrame += TimeUnit.MILLISECONDS.toNanos(millisBetweenUpdates);
+		long now = System.nanoTime();
+		if (now - nextFrame > 0) {
+			// fell behind, draw the next frame straight away
+			nextFrame = now;
+			return;
+		}
+		SystemClock.INSTANCE.parkUntil(nextFrame);
+	}
 	
-	private void drawLoop(Terminal terminal, Game game) throws IOException, InterruptedException {
-		terminal.setCursorVisible(false);
-		terminal.enableSGR(SGR.BOLD);
-		terminal.setBackgroundColor(TextColor.ANSI.BLACK);
-		
-		Boundaries boundaries = game.getBoundaries();
-		
-		while (this.mainThread.isAlive()) {			
-			if (shouldSleep()) continue;
-			
-			terminal.clearScreen();
-			
-			// food drawing
-			game.forEachFoodSpot(food -> writeString(terminal, "#", food.getX(), food.getY(), TextColor.ANSI.WHITE));
-			
-			// horizontal boundaries drawing
-			for (int x = boundaries.getMinX(); x < boundaries.getMaxX(); x++) {
-				writeString(terminal, "-", x, 0,                    TextColor.ANSI.WHITE);
-				writeString(terminal, "-", x, boundaries.getMaxY(), TextColor.ANSI.WHITE);
+	private static TextColor.ANSI colorOf(Color color) {
+		switch (color) {
+			case White: return TextColor.ANSI.WHITE;
+			case Magenta: return TextColor.ANSI.MAGENTA;
+			case Cyan: return TextColor.ANSI.CYAN;
+			default: 
+			case Yellow: return TextColor.ANSI.YELLOW;
+		}
+	}
+	
+	void drawFrame(FrameGrid grid, GameSnapshot snapshot) {
+		int maxX = snapshot.getWidth() - 1;
+		int maxY = snapshot.getHeight() - 1;
+
+		int boardMaxX = snapshot.getBoardWidth() - 1;
+		int boardMaxY = snapshot.getBoardHeight() - 1;
+
+		grid.clear();
+
+		// food, snake and boundaries drawing, the snapshot may only cover part of the board
+		for (int y = 0; y <= maxY; y++) {
+			int boardY = snapshot.getOriginY() + y;
+			for (int x = 0; x <= maxX; x++) {
+				int code = snapshot.get(x, y);
+				if (code == GameSnapshot.FOOD) {
+					grid.put(x, y, '#', TextColor.ANSI.WHITE);
+				} else if (code > 0) {
+					grid.put(x, y, 'O', colorOf(snapshot.getColor(code - 1)));
+				} else if (code == Board.WALL) {
+					int boardX = snapshot.getOriginX() + x;
+					boolean horizontal = boardY == 0 || boardY == boardMaxY;
+					boolean vertical = boardX == 0 || boardX == boardMaxX;
+					grid.put(x, y, horizontal && vertical ? '+' : horizontal ? '-' : '|', TextColor.ANSI.WHITE);
+				}
 			}
-			
-			// vertical boundaries drawing
-			for (int y = boundaries.getMinY(); y < boundaries.getMaxY(); y++) {
-				writeString(terminal, "|", 0,                    y, TextColor.ANSI.WHITE);
-				writeString(terminal, "|", boundaries.getMaxX(), y, TextColor.ANSI.WHITE);
+		}
+
+		// score displaying, one corner each for the first four players
+		for (int i = 0; i < Math.min(4, snapshot.getPlayerCount()); i++) {
+			int x;
+			int y;
+			String score = String.valueOf(snapshot.getScore(i));
+			switch (i) {
+				case 0:
+					// top left corner
+					x = 1;
+					y = 0;
+					break;
+				case 1:
+					// top right corner
+					x = maxX - score.length();
+					y = 0;
+					break;
+				case 2:
+					// bottom left corner
+					x = 1;
+					y = maxY;
+					break;
+				default:
+				case 3:
+					// bottom right corner
+					x = maxX - score.length();
+					y = maxY;
 			}
-			
-			// corner boundaries drawing
-			writeString(terminal, "+", 0,                    0,                    TextColor.ANSI.WHITE);
-			writeString(terminal, "+", boundaries.getMaxX(), 0,                    TextColor.ANSI.WHITE);
-			writeString(terminal, "+", boundaries.getMaxX(), boundaries.getMaxY(), TextColor.ANSI.WHITE);
-			writeString(terminal, "+", 0,                    boundaries.getMaxY(), TextColor.ANSI.WHITE);
-
-			// score displaying
-			AtomicInteger counter = new AtomicInteger(0);
-						
-			game.forEachPlayer(player -> { 
-				TextColor color = null;
-				switch (player.getColor()) {
-					case White: color = TextColor.ANSI.WHITE; break;
-					case Magenta: color = TextColor.ANSI.MAGENTA; break;
-					case Cyan: color = TextColor.ANSI.CYAN; break;
-					default: 
-					case Yellow: color = TextColor.ANSI.YELLOW; break;
-				}
 
-				int x;
-				int y;
-				String score = String.valueOf(player.getScore());
-				switch (counter.getAndIncrement()) {
-					case 0:
-						// top left corner
-						x = 1;
-						y = 0;
-						break;
-					case 1:
-						// top right corner
-						x = this.game.getBoundaries().getMaxX() - score.length();
-						y = 0;
-						break;
-					case 2:
-						// bottom left corner
-						x = 1;
-						y = this.game.getBoundaries().getMaxY();
-						break;
-					default:
-					case 3:
-						// bottom right corner
-						x = this.game.getBoundaries().getMaxX() - score.length();
-						y = this.game.getBoundaries().getMaxY();
-				}
+			grid.putString(x, y, score, colorOf(snapshot.getColor(i)));
+		}
+		
+		if (snapshot.isGameOver()) {
+			if (scoreboard == null) buildScoreboard(snapshot);
+	
+			String clearString = "                           ";
 
-				writeString(terminal, score, x, y, color);
+			grid.putString(1, 1, clearString, TextColor.ANSI.WHITE);
+			for (int i = 0, y = 2; i < scoreboard.length && y < maxY - 1; i++, y++) {
+				grid.putString(1, y, clearString, TextColor.ANSI.WHITE);
+				grid.putString(1, y + 1, clearString, TextColor.ANSI.WHITE);
+				grid.putString(2, y, scoreboard[i], scoreboardColors[i]);
+			}
+		} else {
+			scoreboard = null;
+		}
+	}
 
-				// java is stupid
-				final TextColor segmentColor = color;
-				
-				player.forEachSnakeSegment(segment -> 
-					writeString(terminal, "O", segment.getX(), segment.getY(), segmentColor));
-			});
-			
-			if (game.isGameOver()) {
-				List<Player> scores = 
-					game.getPlayers()
-						.stream()
-						.sorted((a, b) -> b.getScore() - a.getScore())
-						.collect(Collectors.toList());
+	/**
+	 * Sorts the final scores once per match, together with the best scores of the mode
+	 * when the game keeps a score store, instead of on every frame.
+	 */
+	private void buildScoreboard(GameSnapshot snapshot) {
+		List<Integer> scores = 
+			IntStream.range(0, snapshot.getPlayerCount())
+				.boxed()
+				.sorted((a, b) -> snapshot.getScore(b) - snapshot.getScore(a))
+				.collect(Collectors.toList());
+
+		ScoreStore store = game.getScoreStore();
+		List<ScoreEntry> best = store != null ? store.top(game.isTron(), 3) : Collections.<ScoreEntry>emptyList();
+		int size = 1 + scores.size() + (best.isEmpty() ? 0 : 1 + best.size());
+		scoreboard = new String[size];
+		scoreboardColors = new TextColor.ANSI[size];
+
+		int line = 0;
+		scoreboardColors[line] = TextColor.ANSI.WHITE;
+		scoreboard[line++] = "Scores:";
+		for (int player : scores) {
+			scoreboardColors[line] = colorOf(snapshot.getColor(player));
+			scoreboard[line++] = String.format("%-10s %10d", snapshot.getName(player), snapshot.getScore(player));
+		}
+		if (!best.isEmpty()) {
+			scoreboardColors[line] = TextColor.ANSI.WHITE;
+			scoreboard[line++] = "Best:";
+			for (ScoreEntry entry : best) {
+				scoreboardColors[line] = TextColor.ANSI.WHITE;
+				scoreboard[line++] = String.format("%-10s %10d", entry.getName(), entry.getScore());
+			}
+		}
+	}
+	
+	private void drawLoop(Game game) throws IOException, InterruptedException {
+		grid = new FrameGrid(cols, rows);
+		nextFrame = System.nanoTime();
+		game.enableSnapshots(cols, rows);
+		long drawnVersion = 0;
 		
-				String clearString = "                           ";
-
-				writeString(terminal, clearString, 1, 1, TextColor.ANSI.WHITE);
-				writeString(terminal, clearString, 1, 2, TextColor.ANSI.WHITE);
-				writeString(terminal, "Scores:", 2, 2, TextColor.ANSI.WHITE);
-				for (int i = 0, y = 3; i < scores.size(); i++, y++) {
-					TextColor color = null;
-					switch (scores.get(i).getColor()) {
-						case White: color = TextColor.ANSI.WHITE; break;
-						case Magenta: color = TextColor.ANSI.MAGENTA; break;
-						case Cyan: color = TextColor.ANSI.CYAN; break;
-						default: 
-						case Yellow: color = TextColor.ANSI.YELLOW; break;
+		while (this.mainThread.isAlive()) {
+			GameSnapshot snapshot = game.getSnapshot();
+			GameMetrics metrics = game.getMetrics();
+			boolean overlay = showStats && metrics != null;
+			long start = System.nanoTime();
+			boolean statsDue = overlay && start - nextStats >= 0;
+
+			if (snapshot.getVersion() != drawnVersion || statsDue) {
+				drawnVersion = snapshot.getVersion();
+				drawFrame(grid, snapshot);
+				if (overlay) {
+					if (statsDue) {
+						stats = metrics.describe();
+						nextStats = start + TimeUnit.SECONDS.toNanos(1);
+					}
+					for (int i = 0; i < stats.length; i++) {
+						grid.putString(1, 1 + i, stats[i], TextColor.ANSI.WHITE);
 					}
-					writeString(terminal, clearString, 1, y, TextColor.ANSI.WHITE);
-					writeString(terminal, clearString, 1, y + 1, TextColor.ANSI.WHITE);
-					writeString(terminal, scores.get(i).getScoreDescription(), 2, y, color);
+				}
+				int written = grid.flush(renderer);
+				if (written > 0) {
+					renderer.flush();
+				}
+				LatencyTracer tracer = game.getLatencyTracer();
+				if (tracer != null) {
+					tracer.flushed(snapshot.getTick());
+				}
+				if (firstFrameMillis < 0) {
+					firstFrameMillis = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+					if (metrics != null) metrics.recordFirstFrame(firstFrameMillis);
+				}
+				if (metrics != null) {
+					metrics.recordFrame(System.nanoTime() - start, written);
 				}
 			}
-
-			terminal.flush();
+			sleepUntilNextFrame();
 		}
 	}
 	
 	@Override
 	public void run() {		
 		try {
-			DefaultTerminalFactory factory = new DefaultTerminalFactory(System.out, System.in, Charset.forName("UTF8"));
-			
-			factory.setTerminalEmulatorTitle("Snake");
-			factory.setInitialTerminalSize(new TerminalSize(cols, rows));
-			factory.setTerminalEmulatorFontConfiguration(
-				AWTTerminalFontConfiguration.getDefault());
-
-			// using reflection to get at font size variable
-			Field field = AWTTerminalFontConfiguration.class.getDeclaredField("CHOSEN_FONT_SIZE");
-			field.setAccessible(true);
-			field.set(null, Integer.valueOf(56)); // magic number, the value of the font size that seems to work well
-
-			terminal = factory.createTerminalEmulator();
-			terminal.enterPrivateMode();
-			drawLoop(terminal, game);
+			if (opened != null) {
+				opened.join();
+			} else {
+				renderer.open(cols, rows);
+			}
+			drawLoop(game);
 			
 		} catch (Exception e) {
 			throw new RuntimeException(e);
 		} finally {
 			try {
-				terminal.exitPrivateMode();
+				renderer.close();
 			} catch (IOException e) {
 				throw new RuntimeException(e);
 			}
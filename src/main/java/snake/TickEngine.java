@@ -0,0 +1,57 @@
+package snake;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Fixed timestep scheduler. Runs the tick body once per period and parks on the
+ * clock in between, if the body falls more than a few ticks behind the schedule
+ * is reset instead of trying to catch up with a burst of ticks.
+ */
+public class TickEngine {
+
+	private static final int MAX_LAG_TICKS = 5;
+
+	private final Clock clock;
+	private final long tickNanos;
+	private volatile GameMetrics metrics;
+
+	public TickEngine(Clock clock, long tickMillis) {
+		this.clock = clock;
+		this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+	}
+
+	public void run(BooleanSupplier running, Runnable tick) {
+		long next = clock.nanoTime();
+
+		while (running.getAsBoolean()) {
+			GameMetrics metrics = this.metrics;
+			if (metrics != null) {
+				// how late this tick starts compared to its slot in the schedule
+				metrics.recordJitter(clock.nanoTime() - next);
+			}
+
+			tick.run();
+
+			next += tickNanos;
+			long now = clock.nanoTime();
+			if (now - next > MAX_LAG_TICKS * tickNanos) {
+				next = now;
+			}
+
+			clock.parkUntil(next);
+		}
+	}
+
+	void setMetrics(GameMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	public Clock getClock() {
+		return clock;
+	}
+
+	public long getTickNanos() {
+		return tickNanos;
+	}
+}
@@ -0,0 +1,97 @@
+package snake;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Reentrant read write lock that reports how long {@link Lock#lock()} waited and how long
+ * the outermost hold lasted to the game metrics, while they are enabled.
+ */
+final class TimedReadWriteLock implements ReadWriteLock {
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private final Lock readLock = new TimedLock(lock.readLock(), 0);
+	private final Lock writeLock = new TimedLock(lock.writeLock(), 1);
+	private final ThreadLocal<long[]> acquired = ThreadLocal.withInitial(() -> new long[2]);
+	private volatile GameMetrics metrics;
+
+	void setMetrics(GameMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	@Override
+	public Lock readLock() {
+		return readLock;
+	}
+
+	@Override
+	public Lock writeLock() {
+		return writeLock;
+	}
+
+	private final class TimedLock implements Lock {
+
+		private final Lock delegate;
+		private final int slot;
+
+		TimedLock(Lock delegate, int slot) {
+			this.delegate = delegate;
+			this.slot = slot;
+		}
+
+		private int holds() {
+			return slot == 0 ? lock.getReadHoldCount() : lock.getWriteHoldCount();
+		}
+
+		@Override
+		public void lock() {
+			GameMetrics metrics = TimedReadWriteLock.this.metrics;
+			if (metrics == null) {
+				delegate.lock();
+				return;
+			}
+
+			long start = System.nanoTime();
+			delegate.lock();
+			long now = System.nanoTime();
+			metrics.recordLockWait(now - start);
+			if (holds() == 1) acquired.get()[slot] = now;
+		}
+
+		@Override
+		public void unlock() {
+			GameMetrics metrics = TimedReadWriteLock.this.metrics;
+			if (metrics != null && holds() == 1) {
+				long[] stamps = acquired.get();
+				if (stamps[slot] != 0) {
+					metrics.recordLockHold(System.nanoTime() - stamps[slot]);
+					stamps[slot] = 0;
+				}
+			}
+			delegate.unlock();
+		}
+
+		@Override
+		public void lockInterruptibly() throws InterruptedException {
+			delegate.lockInterruptibly();
+		}
+
+		@Override
+		public boolean tryLock() {
+			return delegate.tryLock();
+		}
+
+		@Override
+		public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+			return delegate.tryLock(time, unit);
+		}
+
+		@Override
+		public Condition newCondition() {
+			return delegate.newCondition();
+		}
+	}
+}
@@ -0,0 +1,36 @@
+package snake;
+
+/**
+ * Bot for tron rounds that fills space: it moves into the largest region it can reach
+ * and, among equally large ones, hugs walls and trails so it wastes as few cells as
+ * possible.
+ */
+public class TronController extends BotController {
+
+	public TronController(Player player, Game game) {
+		super(player, game);
+	}
+
+	@Override
+	protected int decide(int head, int current) {
+		int best = -1;
+		long bestScore = -1;
+		for (int i = 0; i < DIRECTIONS.length; i++) {
+			int d = current < 0 ? i : (current + i) % DIRECTIONS.length;
+			int next = head + offsets[d];
+			if (!isFree(next)) continue;
+
+			int area = search.reachable(board, next, head, BotSearch.BUDGET, offsets);
+			int blocked = 0;
+			for (int o = 0; o < offsets.length; o++) {
+				if (!isFree(next + offsets[o])) blocked++;
+			}
+			long score = (long) area * 8 + blocked;
+			if (score > bestScore) {
+				best = d;
+				bestScore = score;
+			}
+		}
+		return best;
+	}
+}
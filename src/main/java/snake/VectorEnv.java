@@ -0,0 +1,231 @@
+package snake;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Many independent games stepped together for training agents. Every game has one
+ * agent seat, driven by the actions passed to {@link #step(int[])}, and optionally bots
+ * on the other seats. Games run on a virtual clock without the pause after a reset.
+ *
+ * A step lasts until the agent's snake has moved once, the natural decision point of the
+ * game, or its episode is over. After a step the observations hold one byte plane of
+ * {@code rows * cols} cells per game, the rewards the change of the agent's score and the
+ * done flags the episodes that ended. Those games are reset straight away with their seed
+ * plus the number of games, so their planes already show the next episode.
+ */
+public class VectorEnv {
+
+	public static final byte EMPTY = 0;
+	public static final byte WALL = 1;
+	public static final byte FOOD = 2;
+	public static final byte HEAD = 3;
+	public static final byte BODY = 4;
+	public static final byte OTHER = 5;
+
+	public static final int NOOP = InputRecorder.RELEASE;
+	public static final int UP = InputRecorder.UP;
+	public static final int DOWN = InputRecorder.DOWN;
+	public static final int LEFT = InputRecorder.LEFT;
+	public static final int RIGHT = InputRecorder.RIGHT;
+
+	private static final int MAX_TICKS_PER_STEP = 64;
+	private static final int CHUNK = 16;
+
+	private final int count;
+	private final int rows;
+	private final int cols;
+	private final boolean tron;
+	private final String[] opponents;
+	private final long maxTicks;
+
+	private final Game[] games;
+	private final ControllerRunner[] runners;
+	private final Player[] agents;
+	private final long[] seeds;
+	private final int[] lastScores;
+	private final int[][] cells;
+	private final ByteBuffer observations;
+	private final float[] rewards;
+	private final boolean[] dones;
+	private final ForkJoinPool pool;
+	private int[] actions;
+
+	/**
+	 * The opponents are a comma separated list of {@link BotController#create} names, one
+	 * per extra seat, or an empty string for a game of one.
+	 */
+	public VectorEnv(int count, int rows, int cols, boolean tron, String opponents, long maxTicks, int parallelism) {
+		this.count = count;
+		this.rows = rows;
+		this.cols = cols;
+		this.tron = tron;
+		this.opponents = opponents.isEmpty() ? new String[0] : opponents.split(",");
+		this.maxTicks = maxTicks;
+		this.games = new Game[count];
+		this.runners = new ControllerRunner[count];
+		this.agents = new Player[count];
+		this.seeds = new long[count];
+		this.lastScores = new int[count];
+		this.cells = new int[count][rows * cols];
+		this.observations = ByteBuffer.allocateDirect(count * rows * cols).order(ByteOrder.nativeOrder());
+		this.rewards = new float[count];
+		this.dones = new boolean[count];
+		this.pool = new ForkJoinPool(parallelism);
+	}
+
+	/**
+	 * Starts a new episode in every game with the given seeds and returns the observations.
+	 */
+	public ByteBuffer reset(long[] seeds) {
+		if (seeds.length != count) throw new IllegalArgumentException("Expected " + count + " seeds");
+		parallel(env -> {
+			start(env, seeds[env]);
+			observe(env);
+		});
+		return observations;
+	}
+
+	/**
+	 * Applies one action per game, {@link #NOOP} keeps the current direction, and steps
+	 * every game once.
+	 */
+	public void step(int[] actions) {
+		if (actions.length != count) throw new IllegalArgumentException("Expected " + count + " actions");
+		this.actions = actions;
+		parallel(this::stepOne);
+	}
+
+	private void parallel(IntConsumer body) {
+		int chunks = (count + CHUNK - 1) / CHUNK;
+		try {
+			pool.submit(() -> IntStream.range(0, chunks).parallel().forEach(chunk -> {
+				for (int env = chunk * CHUNK; env < Math.min(count, (chunk + 1) * CHUNK); env++) {
+					body.accept(env);
+				}
+			})).get();
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void start(int env, long seed) {
+		Game game = new Game(rows, cols, null, tron, new VirtualClock(), seed);
+		game.setResetPause(0);
+		ControllerRunner runner = new ControllerRunner(game, null);
+		agents[env] = game.addPlayer("Agent");
+		for (int i = 0; i < opponents.length; i++) {
+			Player player = game.addPlayer("Bot " + (i + 1));
+			runner.addController(BotController.create(opponents[i], player, game, seed * 31 + i));
+		}
+		games[env] = game;
+		runners[env] = runner;
+		seeds[env] = seed;
+		lastScores[env] = 0;
+	}
+
+	private void stepOne(int env) {
+		Game game = games[env];
+		Player agent = agents[env];
+		agent.setMovementDirection(InputRecorder.decode((byte) actions[env]));
+
+		int head = agent.getSnakeHead();
+		for (int i = 0; i < MAX_TICKS_PER_STEP; i++) {
+			runners[env].pollOnce();
+			game.tick();
+			if (agent.getSnakeHead() != head || !agent.alive() || game.isGameOver()) break;
+		}
+
+		int score = agent.getScore();
+		rewards[env] = score - lastScores[env];
+		lastScores[env] = score;
+
+		boolean done = !agent.alive() || game.isGameOver() || game.getTick() >= maxTicks;
+		dones[env] = done;
+		if (done) start(env, seeds[env] + count);
+		observe(env);
+	}
+
+	/**
+	 * Writes the board plane of one game from the agent's point of view.
+	 */
+	private void observe(int env) {
+		int[] codes = cells[env];
+		games[env].getBoard().copyTo(codes);
+		int id = agents[env].getId();
+		int base = env * rows * cols;
+		for (int cell = 0; cell < codes.length; cell++) {
+			int code = codes[cell];
+			byte value;
+			if (code == Board.EMPTY) {
+				value = EMPTY;
+			} else if (code == Board.WALL) {
+				value = WALL;
+			} else if (code == GameSnapshot.FOOD) {
+				value = FOOD;
+			} else {
+				value = code == id ? BODY : OTHER;
+			}
+			observations.put(base + cell, value);
+		}
+		observations.put(base + agents[env].getSnakeHead(), HEAD);
+	}
+
+	public ByteBuffer getObservations() {
+		return observations;
+	}
+
+	public float[] getRewards() {
+		return rewards;
+	}
+
+	public boolean[] getDones() {
+		return dones;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	public int getPlaneSize() {
+		return rows * cols;
+	}
+
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	public static void main(String[] args) {
+		int envs = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+		int steps = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+		VectorEnv env = new VectorEnv(envs, 20, 80, false, "", 100000, threads);
+		long[] seeds = new long[envs];
+		for (int i = 0; i < envs; i++) seeds[i] = i + 1;
+		env.reset(seeds);
+
+		Rng random = new Rng(1);
+		int[] actions = new int[envs];
+		long episodes = 0;
+		double reward = 0;
+		long start = System.nanoTime();
+		for (int s = 0; s < steps; s++) {
+			for (int i = 0; i < envs; i++) actions[i] = random.nextInt(5);
+			env.step(actions);
+			for (int i = 0; i < envs; i++) {
+				reward += env.getRewards()[i];
+				if (env.getDones()[i]) episodes++;
+			}
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		env.shutdown();
+
+		System.out.printf("%d envs on %d threads: %.0f steps/s, %d episodes, mean reward %.2f per step%n", 
+						  envs, threads, envs * (double) steps / seconds, episodes, reward / envs / steps);
+	}
+}
@@ -0,0 +1,30 @@
+package snake;
+
+public class VirtualClock implements Clock {
+
+	private long now;
+
+	public VirtualClock() {
+		this(0);
+	}
+
+	public VirtualClock(long startNanos) {
+		this.now = startNanos;
+	}
+
+	@Override
+	public long nanoTime() {
+		return now;
+	}
+
+	@Override
+	public void parkUntil(long deadlineNanos) {
+		if (deadlineNanos - now > 0) {
+			now = deadlineNanos;
+		}
+	}
+
+	public void advance(long nanos) {
+		now += nanos;
+	}
+}
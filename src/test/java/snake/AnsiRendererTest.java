@@ -0,0 +1,35 @@
+package snake;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import com.googlecode.lanterna.TextColor;
+
+public class AnsiRendererTest {
+
+	private static String colorCode(TextColor.ANSI color) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		AnsiRenderer renderer = new AnsiRenderer(Channels.newChannel(bytes));
+		renderer.setColor(color);
+		renderer.flush();
+		return new String(bytes.toByteArray(), StandardCharsets.US_ASCII);
+	}
+
+	@Test
+	public void colorsAreForegroundCodes() throws IOException {
+		assertEquals("\033[30m", colorCode(TextColor.ANSI.BLACK));
+		assertEquals("\033[33m", colorCode(TextColor.ANSI.YELLOW));
+		assertEquals("\033[37m", colorCode(TextColor.ANSI.WHITE));
+	}
+
+	@Test
+	public void defaultIsThirtyNine() throws IOException {
+		assertEquals("\033[39m", colorCode(TextColor.ANSI.DEFAULT));
+	}
+}
@@ -0,0 +1,126 @@
+package snake;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Restores a checkpoint taken in the middle of a game and plays the copy and the original
+ * on side by side. The bots keep their own random state, so both games get fresh bots with
+ * the same seeds at the checkpoint.
+ */
+public class GameCheckpointTest {
+
+	private static final int TICKS_BEFORE = 3000;
+	private static final int TICKS_AFTER = 5000;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void restoredGamePlaysOnLikeTheOriginal() {
+		Game original = startedGame(false);
+		Game copy = Game.restore(checkpoint(original), null, new VirtualClock());
+
+		assertSameGame(original, copy);
+		playOn(original, copy);
+	}
+
+	@Test
+	public void restoredTronGamePlaysOnLikeTheOriginal() {
+		Game original = startedGame(true);
+		Game copy = Game.restore(checkpoint(original), null, new VirtualClock());
+
+		assertSameGame(original, copy);
+		playOn(original, copy);
+	}
+
+	@Test
+	public void savedGameLoadsAndPlaysOnLikeTheOriginal() throws IOException {
+		Game original = startedGame(false);
+		Path file = folder.getRoot().toPath().resolve("game.ckpt");
+		GameCheckpoint.save(original, file);
+		Game copy = GameCheckpoint.load(file, null, new VirtualClock());
+
+		assertSameGame(original, copy);
+		playOn(original, copy);
+	}
+
+	private static Game startedGame(boolean tron) {
+		Game game = new Game(30, 60, null, tron, new VirtualClock(), 5);
+		game.setResetPause(0);
+		ControllerRunner controllers = new ControllerRunner(game, null);
+		for (int i = 0; i < 4; i++) {
+			controllers.addController(new RandomWalkController(game.addPlayer("Bot " + (i + 1)), game, i));
+		}
+		run(game, controllers, TICKS_BEFORE);
+		return game;
+	}
+
+	private static void playOn(Game original, Game copy) {
+		ControllerRunner originalBots = bots(original);
+		ControllerRunner copyBots = bots(copy);
+		for (int i = 0; i < TICKS_AFTER; i += 100) {
+			run(original, originalBots, 100);
+			run(copy, copyBots, 100);
+			assertSameGame(original, copy);
+		}
+	}
+
+	private static ControllerRunner bots(Game game) {
+		ControllerRunner controllers = new ControllerRunner(game, null);
+		for (int i = 0; i < game.getPlayers().size(); i++) {
+			controllers.addController(new RandomWalkController(game.getPlayers().get(i), game, 100 + i));
+		}
+		return controllers;
+	}
+
+	private static void run(Game game, ControllerRunner controllers, int ticks) {
+		for (int i = 0; i < ticks; i++) {
+			if (game.isGameOver()) game.reset(true);
+			controllers.pollOnce();
+			game.tick();
+		}
+	}
+
+	private static ByteBuffer checkpoint(Game game) {
+		ByteBuffer buffer = ByteBuffer.allocate(game.checkpointSize());
+		game.checkpoint(buffer);
+		buffer.flip();
+		return buffer;
+	}
+
+	private static byte[] bytes(ByteBuffer buffer) {
+		return Arrays.copyOf(buffer.array(), buffer.limit());
+	}
+
+	private static void assertSameGame(Game expected, Game actual) {
+		long tick = expected.getTick();
+		assertEquals(tick, actual.getTick());
+
+		Board board = expected.getBoard();
+		int[] expectedCells = new int[board.getWidth() * board.getHeight()];
+		int[] actualCells = new int[expectedCells.length];
+		board.copyTo(expectedCells);
+		actual.getBoard().copyTo(actualCells);
+		assertArrayEquals("board at tick " + tick, expectedCells, actualCells);
+
+		assertEquals(expected.getPlayers().size(), actual.getPlayers().size());
+		for (int i = 0; i < expected.getPlayers().size(); i++) {
+			Player player = expected.getPlayers().get(i);
+			assertEquals(player.getName() + " at tick " + tick, player.getScore(), actual.getPlayers().get(i).getScore());
+			assertEquals(player.getName() + " at tick " + tick, player.getSnakeLength(), actual.getPlayers().get(i).getSnakeLength());
+		}
+
+		// everything else, the random state and timers included
+		assertArrayEquals("checkpoint at tick " + tick, bytes(checkpoint(expected)), bytes(checkpoint(actual)));
+	}
+}
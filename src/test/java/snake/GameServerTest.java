@@ -0,0 +1,141 @@
+package snake;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Plays against a {@link GameServer} over loopback with {@link NetworkClient}s. The game
+ * is ticked by a thread of the test, which can hold it still to check what a client is sent
+ * while nothing changes.
+ */
+public class GameServerTest {
+
+	private Game game;
+	private ControllerRunner controllers;
+	private GameServer server;
+	private Thread serverThread;
+	private Thread ticker;
+	private volatile boolean ticking = true;
+	private volatile boolean stopped;
+
+	@Before
+	public void start() throws IOException {
+		game = new Game(20, 80, null, false, new VirtualClock(), 7);
+		controllers = new ControllerRunner(game, null);
+		server = new GameServer(game, controllers, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+		serverThread = new Thread(server, "server");
+		serverThread.start();
+		ticker = new Thread(() -> {
+			while (!stopped) {
+				if (ticking) {
+					controllers.pollOnce();
+					game.tick();
+				}
+				try {
+					Thread.sleep(1);
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+		}, "ticker");
+		ticker.start();
+	}
+
+	@After
+	public void stop() throws InterruptedException {
+		stopped = true;
+		server.stop();
+		ticker.join();
+		serverThread.join();
+	}
+
+	private NetworkClient connect() throws IOException {
+		return new NetworkClient(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort()));
+	}
+
+	private static void readUntil(NetworkClient client, byte type) throws IOException {
+		while (client.readMessage() != type) {
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void joinIsWelcomedWithTheBoard() throws IOException {
+		try (NetworkClient client = connect()) {
+			assertEquals(1, client.join("Remote"));
+			readUntil(client, GameServer.FRAME);
+
+			assertEquals(80, client.getWidth());
+			assertEquals(20, client.getHeight());
+			assertEquals(80, client.getBoardWidth());
+			assertEquals(20, client.getBoardHeight());
+
+			// the frame may predate the join, a delta brings the new player
+			while (client.getPlayerCount() == 0) {
+				client.readMessage();
+			}
+			assertEquals(1, client.getPlayerCount());
+			assertEquals("Remote", client.getName(0));
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void takenNameIsRejected() throws IOException {
+		try (NetworkClient first = connect(); NetworkClient second = connect()) {
+			assertEquals(1, first.join("Remote"));
+			assertEquals(-1, second.join("remote"));
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void inputReachesThePlayer() throws IOException, InterruptedException {
+		try (NetworkClient client = connect()) {
+			int id = client.join("Remote");
+			Player player = game.getPlayers().get(id - 1);
+			IntVector2 turn = player.getLatchedDirection() == Controller.UP ? Controller.LEFT : Controller.UP;
+
+			client.sendInput(turn, false);
+			while (player.getLatchedDirection() != turn) {
+				Thread.sleep(1);
+			}
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void reconnectGetsTheSeatAndTheBoardOfAStillGame() throws IOException, InterruptedException {
+		int id;
+		try (NetworkClient client = connect()) {
+			id = client.join("Remote");
+			readUntil(client, GameServer.FRAME);
+		}
+
+		// nothing is published any more, the client can only get a board from the handshake
+		ticking = false;
+		while (server.getConnectionCount() > 0) {
+			Thread.sleep(1);
+		}
+		Thread.sleep(50);
+
+		try (NetworkClient client = connect()) {
+			assertEquals(id, client.join("REMOTE"));
+			assertEquals(GameServer.FRAME, client.readMessage());
+			assertEquals(1, game.playerCount());
+
+			GameSnapshot snapshot = game.getSnapshot();
+			assertEquals(snapshot.getVersion(), client.getVersion());
+			for (int y = 0; y < snapshot.getHeight(); y++) {
+				for (int x = 0; x < snapshot.getWidth(); x++) {
+					assertEquals("cell " + x + "," + y, snapshot.get(x, y), client.getCell(x, y));
+				}
+			}
+			assertTrue(client.getName(id - 1).equals("Remote"));
+		}
+	}
+}
@@ -0,0 +1,115 @@
+package snake;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Records games driven by bots with {@link InputRecorder} and checks that
+ * {@link InputReplay} rebuilds exactly the same game from the log.
+ */
+public class InputReplayTest {
+
+	private static final int TICKS = 6000;
+	private static final int RESET_EVERY = 1700;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void replayEndsInTheRecordedState() throws IOException {
+		assertReplays(false);
+	}
+
+	@Test
+	public void replayOfATronGameEndsInTheRecordedState() throws IOException {
+		assertReplays(true);
+	}
+
+	@Test
+	public void logOfAnOlderVersionIsRejected() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("old.snkl");
+		record(file, false);
+		byte[] log = Files.readAllBytes(file);
+		log[4] = InputRecorder.VERSION - 1;
+		Files.write(file, log);
+
+		try {
+			new InputReplay(file);
+			fail("Replayed a version " + log[4] + " log");
+		} catch (IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("version"));
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void fileThatIsNoLogIsRejected() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("game.ckpt");
+		GameCheckpoint.save(new Game(20, 40, null, false, new VirtualClock(), 1), file);
+		new InputReplay(file);
+	}
+
+	private void assertReplays(boolean tron) throws IOException {
+		Path file = folder.getRoot().toPath().resolve("game.snkl");
+		Game recorded = record(file, tron);
+		Game replayed = new InputReplay(file).replay(null);
+
+		assertEquals(recorded.getTick(), replayed.getTick());
+		assertEquals(recorded.getPlayers().size(), replayed.getPlayers().size());
+		for (int i = 0; i < recorded.getPlayers().size(); i++) {
+			Player player = recorded.getPlayers().get(i);
+			assertEquals(player.getName(), replayed.getPlayers().get(i).getName());
+			assertEquals(player.getName(), player.getScore(), replayed.getPlayers().get(i).getScore());
+		}
+		// board, snakes, random state and timers
+		assertArrayEquals(checkpoint(recorded), checkpoint(replayed));
+	}
+
+	/**
+	 * Plays a game with three bots seated up front and one joining later, resetting it
+	 * every now and then and whenever it is over, the way a player pressing reset would.
+	 */
+	private static Game record(Path file, boolean tron) throws IOException {
+		Game game = new Game(30, 60, null, tron, new VirtualClock(), 9);
+		ControllerRunner controllers = new ControllerRunner(game, null);
+		try (InputRecorder recorder = new InputRecorder(file)) {
+			game.record(recorder);
+			for (int i = 0; i < 3; i++) {
+				controllers.addController(new RandomWalkController(game.addPlayer("Bot " + (i + 1)), game, i));
+			}
+
+			Player[] late = new Player[1];
+			game.join("Late", player -> late[0] = player);
+			for (int i = 1; i <= TICKS; i++) {
+				if (late[0] != null) {
+					controllers.addController(new RandomWalkController(late[0], game, 3));
+					late[0] = null;
+				}
+				if (i % RESET_EVERY == 0 || game.isGameOver()) game.reset(true);
+				controllers.pollOnce();
+				game.tick();
+			}
+			// as Game.start() ends a log
+			recorder.end(game.getTick() + 1);
+		}
+		assertEquals(4, game.playerCount());
+		return game;
+	}
+
+	private static byte[] checkpoint(Game game) {
+		ByteBuffer buffer = ByteBuffer.allocate(game.checkpointSize());
+		game.checkpoint(buffer);
+		return Arrays.copyOf(buffer.array(), buffer.position());
+	}
+}
@@ -0,0 +1,234 @@
+package snake;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+/**
+ * Checks the collision rules of {@link MoveResolver} on small boards laid out by hand, one
+ * step each, and that the parallel path plays a crowded game exactly like the sequential one.
+ */
+public class MoveResolverTest {
+
+	private static final IntVector2[] TURNS = {Controller.UP, Controller.RIGHT, Controller.DOWN, Controller.LEFT};
+
+	private Game game;
+	private Board board;
+	private MoveResolver resolver;
+
+	private void board(int rows, int cols) {
+		game = new Game(rows, cols, null, false, new VirtualClock(), 1);
+		board = game.getBoard();
+		resolver = new MoveResolver(board, game.getPlayerTable(), game.getPlayers());
+	}
+
+	/**
+	 * Adds a snake on the given cells, head first. At game time zero only a snake marked
+	 * as due moves on the next step.
+	 */
+	private Player snake(IntVector2 direction, int score, int... cells) {
+		Player player = game.addPlayer("P" + (game.getPlayers().size() + 1));
+		player.place(direction, cells);
+		PlayerTable table = game.getPlayerTable();
+		table.score[player.getId() - 1] = score;
+		table.lastUpdateTime[player.getId() - 1] = -1000;
+		return player;
+	}
+
+	private int cell(int x, int y) {
+		return board.cell(x, y);
+	}
+
+	@Test
+	public void lonelyMoveSucceeds() {
+		board(10, 10);
+		Player player = snake(Controller.RIGHT, 0, cell(4, 4), cell(3, 4), cell(2, 4));
+
+		resolver.step();
+
+		assertTrue(player.alive());
+		assertEquals(cell(5, 4), player.getSnakeHead());
+		assertEquals(player.getId(), board.get(cell(5, 4)));
+		assertEquals(Board.EMPTY, board.get(cell(2, 4)));
+	}
+
+	@Test
+	public void headsMeetingOnAnEmptyCellAllDie() {
+		board(10, 10);
+		Player left = snake(Controller.RIGHT, 0, cell(3, 4));
+		Player right = snake(Controller.LEFT, 0, cell(5, 4));
+		Player above = snake(Controller.DOWN, 0, cell(4, 3));
+		Player bystander = snake(Controller.UP, 0, cell(7, 7));
+
+		resolver.step();
+
+		assertFalse(left.alive());
+		assertFalse(right.alive());
+		assertFalse(above.alive());
+		assertEquals(Board.EMPTY, board.get(cell(4, 4)));
+		assertTrue(bystander.alive());
+	}
+
+	/**
+	 * Pairs meeting head on in every row, listed bottom up and right to left so that the
+	 * player order is the reverse of the cell order the bands sort claims by, with a lone
+	 * mover in between each pair that has to survive. Enough players to take the parallel
+	 * path, so it runs once on each.
+	 */
+	@Test
+	public void claimsAreFoundInEveryBand() {
+		claimsInEveryBand(MoveResolver.PARALLEL_THRESHOLD);
+	}
+
+	@Test
+	public void claimsAreFoundInEveryBandSequentially() {
+		claimsInEveryBand(Integer.MAX_VALUE);
+	}
+
+	private void claimsInEveryBand(int parallelThreshold) {
+		board(64, 20);
+		resolver.setParallelThreshold(parallelThreshold);
+		Player[] pairs = new Player[2 * 60];
+		Player[] lone = new Player[60];
+		for (int y = 62; y >= 3; y--) {
+			int row = y - 3;
+			pairs[2 * row] = snake(Controller.LEFT, 0, cell(12, y));
+			lone[row] = snake(y % 2 == 0 ? Controller.RIGHT : Controller.LEFT, 0, cell(8, y));
+			pairs[2 * row + 1] = snake(Controller.RIGHT, 0, cell(10, y));
+		}
+
+		resolver.step();
+
+		for (int row = 0; row < 60; row++) {
+			assertFalse("row " + (row + 3), pairs[2 * row].alive());
+			assertFalse("row " + (row + 3), pairs[2 * row + 1].alive());
+			assertTrue("row " + (row + 3), lone[row].alive());
+			assertEquals(Board.EMPTY, board.get(cell(11, row + 3)));
+		}
+	}
+
+	@Test
+	public void tailLeavingThisTickStillBlocks() {
+		board(10, 10);
+		Player mover = snake(Controller.RIGHT, 0, cell(5, 4), cell(4, 4), cell(3, 4));
+		Player follower = snake(Controller.UP, 0, cell(3, 5), cell(3, 6));
+
+		resolver.step();
+
+		assertTrue(mover.alive());
+		assertEquals(cell(6, 4), mover.getSnakeHead());
+		assertFalse(follower.alive());
+		assertEquals(Board.EMPTY, board.get(cell(3, 4)));
+	}
+
+	@Test
+	public void wallsAndOwnBodyKill() {
+		board(10, 10);
+		Player walled = snake(Controller.LEFT, 0, cell(1, 2));
+		Player curled = snake(Controller.DOWN, 0, cell(5, 5), cell(6, 5), cell(6, 6), cell(5, 6), cell(4, 6));
+
+		resolver.step();
+
+		assertFalse(walled.alive());
+		assertFalse(curled.alive());
+	}
+
+	/**
+	 * The dead give half their score to the survivors. A killer earns the whole score of
+	 * its victim but does not share in that victim's half, and kills are paid from the
+	 * scores before the tick, even when the killer dies in the same tick.
+	 */
+	@Test
+	public void killsAndSurvivorsAreScoredFromTheScoresBeforeTheTick() {
+		board(12, 12);
+		// a runs into the body of b, b runs into the body of c
+		Player a = snake(Controller.UP, 10, cell(2, 5), cell(2, 6));
+		Player b = snake(Controller.UP, 20, cell(4, 3), cell(3, 3), cell(2, 3), cell(2, 4), cell(3, 4));
+		Player c = snake(Controller.RIGHT, 30, cell(7, 2), cell(6, 2), cell(5, 2), cell(4, 2), cell(3, 2));
+		// d and e meet head on, f does not move this tick
+		Player d = snake(Controller.RIGHT, 8, cell(6, 9));
+		Player e = snake(Controller.LEFT, 4, cell(8, 9));
+		Player f = snake(Controller.UP, 6, cell(9, 6));
+		game.getPlayerTable().lastUpdateTime[f.getId() - 1] = 0;
+
+		resolver.step();
+
+		assertFalse(a.alive());
+		assertFalse(b.alive());
+		assertTrue(c.alive());
+		assertFalse(d.alive());
+		assertFalse(e.alive());
+		assertTrue(f.alive());
+		assertEquals(cell(9, 6), f.getSnakeHead());
+
+		int pool = 10 / 2 + 20 / 2 + 8 / 2 + 4 / 2;
+		assertEquals(10, a.getScore());
+		assertEquals(20 + 10, b.getScore());
+		assertEquals(30 + 20 + pool - 20 / 2, c.getScore());
+		assertEquals(8, d.getScore());
+		assertEquals(4, e.getScore());
+		assertEquals(6 + pool, f.getScore());
+	}
+
+	@Test
+	public void resultsDoNotDependOnThePoolSize() throws InterruptedException, ExecutionException {
+		Game sequential = crowd(Integer.MAX_VALUE);
+		Game common = crowd(1);
+		Game small = crowd(1);
+		ForkJoinPool pool = new ForkJoinPool(3);
+		try {
+			for (int i = 0; i < 30; i++) {
+				play(sequential, 100);
+				play(common, 100);
+				pool.submit(() -> play(small, 100)).get();
+
+				byte[] expected = checkpoint(sequential);
+				assertArrayEquals("common pool at tick " + sequential.getTick(), expected, checkpoint(common));
+				assertArrayEquals("pool of 3 at tick " + sequential.getTick(), expected, checkpoint(small));
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * A crowded board whose players are steered by the tick number alone, so that games
+	 * with the same seed can only differ in how their moves were resolved.
+	 */
+	private static Game crowd(int parallelThreshold) {
+		Game game = new Game(96, 96, null, false, new VirtualClock(), 17);
+		game.setResetPause(0);
+		game.setParallelThreshold(parallelThreshold);
+		for (int i = 0; i < 300; i++) {
+			game.addPlayer("Bot " + (i + 1));
+		}
+		return game;
+	}
+
+	private static void play(Game game, int ticks) {
+		for (int i = 0; i < ticks; i++) {
+			if (game.isGameOver()) game.reset(true);
+			long tick = game.getTick();
+			for (Player player : game.getPlayers()) {
+				if ((tick + player.getId()) % 40 == 0) {
+					player.setMovementDirection(TURNS[(int) ((tick / 40 + player.getId()) % TURNS.length)]);
+				}
+			}
+			game.tick();
+		}
+	}
+
+	private static byte[] checkpoint(Game game) {
+		ByteBuffer buffer = ByteBuffer.allocate(game.checkpointSize());
+		game.checkpoint(buffer);
+		return Arrays.copyOf(buffer.array(), buffer.position());
+	}
+}
@@ -0,0 +1,122 @@
+package snake;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ScoreStoreTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static int[] scores(List<ScoreEntry> entries) {
+		int[] scores = new int[entries.size()];
+		for (int i = 0; i < scores.length; i++) {
+			scores[i] = entries.get(i).getScore();
+		}
+		return scores;
+	}
+
+	@Test
+	public void tornLastRecordIsCutOff() throws IOException {
+		Path directory = folder.getRoot().toPath();
+		try (ScoreStore store = new ScoreStore(directory)) {
+			store.record("Ann", 30, false, 1);
+			store.record("Bob", 50, false, 2);
+		}
+		Path log = directory.resolve("scores.log");
+		long size = Files.size(log);
+
+		// a crash part way through appending the next record
+		try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+			channel.write(ByteBuffer.wrap(new byte[] {0, 3, 'C', 'a'}));
+		}
+		// and an index that has to be rebuilt, so the log is read to its end
+		Files.delete(directory.resolve("scores.idx"));
+
+		try (ScoreStore store = new ScoreStore(directory)) {
+			assertEquals(size, Files.size(log));
+			assertEquals(2, store.top(10).size());
+			store.record("Cat", 40, false, 3);
+		}
+		try (ScoreStore store = new ScoreStore(directory)) {
+			assertEquals("[50, 40, 30]", Arrays.toString(scores(store.top(10))));
+			assertEquals("Cat", store.top(10).get(1).getName());
+		}
+	}
+
+	@Test
+	public void recordIndexedBeforeACrashIsNotIndexedTwice() throws IOException {
+		Path directory = folder.getRoot().toPath();
+		try (ScoreStore store = new ScoreStore(directory)) {
+			store.record("Ann", 30, false, 1);
+			store.record("Bob", 50, true, 2);
+		}
+
+		// the index holds Bob, but claims to cover the log only up to his record
+		try (FileChannel index = FileChannel.open(directory.resolve("scores.idx"), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ByteBuffer length = ByteBuffer.allocate(8);
+			index.read(length, 8);
+			length.putLong(0, length.getLong(0) - (2 + 3 + 13));
+			length.clear();
+			index.write(length, 8);
+		}
+
+		try (ScoreStore store = new ScoreStore(directory)) {
+			assertEquals(2, store.top(10).size());
+			assertEquals(1, store.top(true, 10).size());
+			assertEquals(1, store.topOf("Bob", 10).size());
+		}
+	}
+
+	@Test
+	public void namesSharingALongPrefixKeepTheirOwnScores() throws IOException {
+		String prefix = "A player name longer than a slot ";
+		try (ScoreStore store = new ScoreStore(folder.getRoot().toPath())) {
+			store.record(prefix + "one", 10, false, 1);
+			store.record(prefix + "two", 20, false, 2);
+			store.record(prefix + "one", 30, false, 3);
+
+			List<ScoreEntry> one = store.topOf(prefix + "one", 10);
+			assertEquals("[30, 10]", Arrays.toString(scores(one)));
+			assertEquals(prefix + "one", one.get(0).getName());
+			assertEquals("[20]", Arrays.toString(scores(store.topOf(prefix + "two", 10))));
+		}
+	}
+
+	@Test
+	public void finishedMatchIsVisibleToTheNextQuery() throws IOException {
+		Game game = new Game(20, 80, null, false, new VirtualClock(), 1);
+		game.addPlayer("Ann");
+		game.addPlayer("Bob");
+		try (ScoreStore store = new ScoreStore(folder.getRoot().toPath())) {
+			store.record(game);
+			assertEquals(2, store.top(10).size());
+		}
+	}
+
+	@Test
+	public void matchEndingAfterCloseIsDropped() throws IOException {
+		Game game = new Game(20, 80, null, false, new VirtualClock(), 1);
+		game.addPlayer("Ann");
+		ScoreStore store = new ScoreStore(folder.getRoot().toPath());
+		store.close();
+		store.record(game);
+		store.close();
+
+		try (ScoreStore reopened = new ScoreStore(folder.getRoot().toPath())) {
+			assertEquals(0, reopened.top(10).size());
+		}
+	}
+}
@@ -0,0 +1,81 @@
+package snake;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.Test;
+
+/**
+ * Guards the allocation free game loop: once warmed up, ticking a game driven by bots
+ * must not allocate at all on the ticking thread. Growth is excluded, the board pages and
+ * the snake rings are allocated up front and the test checks no snake outgrew its ring.
+ */
+public class TickAllocationTest {
+
+	private static final int WARMUP_TICKS = 20000;
+	private static final int MEASURED_TICKS = 10000;
+	// far more than the food spawned over all ticks can add
+	private static final int SNAKE_CELLS = 1024;
+	private static final long[] SEEDS = {1, 3, 6, 11, 42};
+
+	@Test
+	public void steadyStateTicksDoNotAllocate() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+		assumeTrue(threads.isThreadAllocatedMemorySupported());
+		threads.setThreadAllocatedMemoryEnabled(true);
+
+		for (long seed : SEEDS) {
+			Game game = new Game(100, 200, null, false, new VirtualClock(), seed);
+			allocatePages(game.getBoard());
+			ControllerRunner controllers = new ControllerRunner(game, null);
+			for (int i = 0; i < 4; i++) {
+				Player player = game.addPlayer("Bot " + (i + 1));
+				player.reserveSnake(SNAKE_CELLS);
+				controllers.addController(new RandomWalkController(player, game, i));
+			}
+
+			run(game, controllers, WARMUP_TICKS);
+
+			long thread = Thread.currentThread().getId();
+			long before = threads.getThreadAllocatedBytes(thread);
+			run(game, controllers, MEASURED_TICKS);
+			long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+			for (Player player : game.getPlayers()) {
+				assertTrue("seed " + seed + " grew a snake past its ring", player.getSnakeLength() <= SNAKE_CELLS);
+			}
+			assertEquals("bytes allocated over " + MEASURED_TICKS + " ticks with seed " + seed, 0, allocated);
+		}
+	}
+
+	/**
+	 * Warm up and measurement share this loop so that both run the same compiled code.
+	 */
+	private static void run(Game game, ControllerRunner controllers, int ticks) {
+		for (int i = 0; i < ticks; i++) {
+			controllers.pollOnce();
+			game.tick();
+		}
+	}
+
+	/**
+	 * Cell and food pages are allocated the first time they are written, which is growth
+	 * rather than garbage, so the test allocates all of them up front.
+	 */
+	private static void allocatePages(Board board) {
+		int cells = board.getWidth() * board.getHeight();
+		for (int cell = 0; cell < cells; cell += Board.PAGE_SIZE) {
+			board.reserve(cell);
+			int inner = Math.max(cell, board.getWidth() + 1);
+			if (board.isFree(inner)) {
+				board.addFood(inner);
+				board.removeFood(inner);
+			}
+		}
+	}
+}